@@ -0,0 +1,88 @@
+package com.example.accessing_data_rest;
+
+import com.example.accessing_data_rest.model.Game;
+import com.example.accessing_data_rest.model.Player;
+import com.example.accessing_data_rest.model.User;
+import com.example.accessing_data_rest.repositories.GameRepository;
+import com.example.accessing_data_rest.repositories.PlayerRepository;
+import com.example.accessing_data_rest.repositories.UserRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Inserting many rows in one transaction: 100 users (bulk signup) or 100 players
+// into one game (bulk join), under three id/batching setups:
+//  - unbatched_alloc1:  a sequence call and an INSERT round trip per row
+//  - unbatched_alloc50: ids in blocks of 50, one INSERT per row (what AUTO gave us before)
+//  - batched_alloc50:   ids in blocks of 50 (pooled-lo), INSERTs in JDBC batches of 50, ordered
+// The DB is in-memory H2, where a round trip is cheap; over a network the gap grows.
+//
+//   mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="BulkInsertBenchmark"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class BulkInsertBenchmark {
+
+    private static final int ROWS = 100;
+
+    @Param({"unbatched_alloc1", "unbatched_alloc50", "batched_alloc50"})
+    public String setup;
+
+    private final AtomicLong names = new AtomicLong();
+    private LobbyFixture lobby;
+    private TransactionTemplate transactionTemplate;
+    private UserRepository userRepository;
+    private PlayerRepository playerRepository;
+    private Game game; // detached; players only need its id
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        lobby = new LobbyFixture(1_000,
+                "spring.jpa.properties.lobby.id.allocation-size=" + (setup.endsWith("alloc1") ? 1 : 50),
+                "spring.jpa.properties.hibernate.jdbc.batch_size=" + (setup.startsWith("batched") ? 50 : 0),
+                "spring.jpa.properties.hibernate.order_inserts=" + setup.startsWith("batched"));
+        transactionTemplate = lobby.bean(TransactionTemplate.class);
+        userRepository = lobby.bean(UserRepository.class);
+        playerRepository = lobby.bean(PlayerRepository.class);
+        game = lobby.bean(GameRepository.class).findById(1L).orElseThrow();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        lobby.close();
+    }
+
+    @Benchmark
+    public List<User> registerUsers() {
+        return transactionTemplate.execute(status -> {
+            List<User> users = new ArrayList<>(ROWS);
+            for (int i = 0; i < ROWS; i++) {
+                User user = new User();
+                user.setName("signup" + names.incrementAndGet());
+                users.add(user);
+            }
+            return (List<User>) userRepository.saveAll(users);
+        });
+    }
+
+    @Benchmark
+    public List<Player> createPlayers() {
+        return transactionTemplate.execute(status -> {
+            List<Player> players = new ArrayList<>(ROWS);
+            for (int i = 0; i < ROWS; i++) {
+                Player player = new Player();
+                player.setName("joiner" + names.incrementAndGet());
+                player.setGame(game);
+                players.add(player);
+            }
+            return (List<Player>) playerRepository.saveAll(players);
+        });
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.accessing_data_rest;
+
+import com.example.accessing_data_rest.config.H2Checkpointer;
+import com.example.accessing_data_rest.dto.GameSummary;
+import com.example.accessing_data_rest.model.Game;
+import com.example.accessing_data_rest.service.GameService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// The same writes and reads against the three ways H2 can keep the lobby (see application.properties):
+//  - file:   the default file database; H2 writes commits out every WRITE_DELAY (500 ms),
+//            so a crash loses at most the last half second of them
+//  - tuned:  the h2-tuned profile, a file database with a bigger cache and WRITE_DELAY=1000;
+//            a crash loses at most the last second
+//  - memory: the h2-memory profile, an in-memory database that H2Checkpointer copies to disk every
+//            lobby.h2.checkpoint.interval and on shutdown; a crash loses everything since the last copy
+// checkpoint() is what getting it all onto disk costs: CHECKPOINT for the file modes, the
+// checkpointer's SCRIPT for memory (how long a crash window of one interval costs per interval).
+// Each mode keeps its database under target/h2-bench/<storage>, emptied before every trial.
+//
+//   mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="H2StorageBenchmark"
+//   mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="H2StorageBenchmark.joinGame -p storage=file,memory"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class H2StorageBenchmark {
+
+    @Param({"file", "tuned", "memory"})
+    public String storage;
+
+    @Param({"100000"})
+    public int games;
+
+    private final AtomicLong names = new AtomicLong();
+    private LobbyFixture lobby;
+    private GameService gameService;
+    private H2Checkpointer checkpointer; // memory only
+    private JdbcTemplate jdbcTemplate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Path dir = Path.of("target", "h2-bench", storage);
+        FileSystemUtils.deleteRecursively(dir.toFile());
+        String profile = switch (storage) {
+            case "file" -> "default";
+            case "tuned" -> "h2-tuned";
+            case "memory" -> "h2-memory";
+            default -> throw new IllegalArgumentException("Unknown storage " + storage);
+        };
+        lobby = new LobbyFixture(games, "lobby.h2.dir=" + dir.toAbsolutePath(), "spring.profiles.active=" + profile,
+                "lobby.h2.checkpoint.interval=365d"); // checkpoint() measures it, rather than a timer in the middle
+        gameService = lobby.bean(GameService.class);
+        jdbcTemplate = lobby.bean(JdbcTemplate.class);
+        checkpointer = storage.equals("memory") ? lobby.bean(H2Checkpointer.class) : null;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        lobby.close();
+    }
+
+    @Benchmark
+    public Game createGame() {
+        return gameService.createGame("bench" + names.incrementAndGet(), 2, 8, lobby.randomUserName());
+    }
+
+    @Benchmark
+    public Game joinGame() {
+        return gameService.joinGame(lobby.randomOpenGameId(), "joiner" + names.incrementAndGet());
+    }
+
+    @Benchmark
+    public Slice<GameSummary> getOpenGamesDeepPage() {
+        return gameService.getOpenGamesAfter(lobby.randomGameId(), 50);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    public Duration checkpoint() throws Exception {
+        if (checkpointer != null) {
+            return checkpointer.checkpoint();
+        }
+        jdbcTemplate.execute("CHECKPOINT");
+        return null;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.accessing_data_rest;
+
+import com.example.accessing_data_rest.service.GameSearchIndex;
+import com.example.accessing_data_rest.service.LobbyEngine;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+// The whole application (no web server) on a fresh in-memory H2, seeded with a lobby of
+// a given size, for benchmarks that go through the real services and repositories.
+// serving() also starts Tomcat, on a free port, for load tests that go through HTTP.
+//
+// Seeding is done in SQL, a few statements however big the lobby:
+//  - games 1..N, every 4th one ACTIVE, the rest SIGNUP and never full (maxPlayers is huge)
+//  - one player per game: its owner
+//  - N/10 users (100..100k), user<k>; game<i> is owned by user<(i-1) % users + 1>
+public final class LobbyFixture implements AutoCloseable {
+
+    private final ConfigurableApplicationContext context;
+    private final int games;
+    private final int users;
+
+    public LobbyFixture(int games, String... extraProperties) {
+        this(false, games, extraProperties);
+    }
+
+    public static LobbyFixture serving(int games, String... extraProperties) {
+        return new LobbyFixture(true, games, extraProperties);
+    }
+
+    private LobbyFixture(boolean web, int games, String... extraProperties) {
+        this.games = games;
+        this.users = Math.max(100, Math.min(100_000, games / 10));
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("spring.main.web-application-type", web ? "servlet" : "none");
+        properties.put("server.port", "0");
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("logging.level.root", "WARN");
+        properties.put("spring.datasource.url", "jdbc:h2:mem:lobby-bench;DB_CLOSE_DELAY=-1");
+        properties.put("spring.jpa.hibernate.ddl-auto", "create");
+        properties.put("lobby.player-count.reconcile-initial-delay", "365d"); // keep background jobs out of the numbers
+        properties.put("lobby.reaper.initial-delay", "365d");
+        properties.put("lobby.event-log.enabled", "false");                   // the in-memory DB starts empty every run
+        for (String property : extraProperties) {
+            int eq = property.indexOf('=');
+            properties.put(property.substring(0, eq), property.substring(eq + 1)); // a repeated argument would be joined, not replaced
+        }
+        if (properties.containsKey("lobby.h2.dir")) {
+            // a benchmark of the H2 storage itself: the database is the one application.properties,
+            // or the profile, makes of lobby.h2.dir (tables created afresh all the same)
+            properties.remove("spring.datasource.url");
+        }
+        List<String> args = new ArrayList<>(); // as arguments, so they win over application.properties
+        properties.forEach((name, value) -> args.add("--" + name + "=" + value));
+        this.context = new SpringApplicationBuilder(AccessingDataRestApplication.class).run(args.toArray(String[]::new));
+        try {
+            seed();
+            context.getBeanProvider(LobbyEngine.class).ifAvailable(LobbyEngine::load); // it loaded an empty lobby at startup
+            context.getBean(GameSearchIndex.class).load();                              // ... and so did the search index
+        } catch (RuntimeException e) {
+            context.close();
+            throw e;
+        }
+    }
+
+    private void seed() {
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        jdbc.update("INSERT INTO user_table (user_id, name) SELECT X, 'user' || X FROM SYSTEM_RANGE(1, ?)", users);
+        jdbc.update("INSERT INTO game (game_id, name, min_players, max_players, owner, status, player_count, version)"
+                + " SELECT X, 'game' || X, 2, 1000000, 'user' || (MOD(X - 1, ?) + 1),"
+                + " CASE WHEN MOD(X, 4) = 0 THEN 'ACTIVE' ELSE 'SIGNUP' END, 1, 0 FROM SYSTEM_RANGE(1, ?)", users, games);
+        jdbc.update("INSERT INTO player (player_id, name, game_game_id, user_user_id)"
+                + " SELECT X, 'user' || (MOD(X - 1, ?) + 1), X, MOD(X - 1, ?) + 1 FROM SYSTEM_RANGE(1, ?)", users, users, games);
+
+        // ids handed out by Hibernate from here on must come after the seeded ones
+        List<String> sequences = jdbc.queryForList(
+                "SELECT SEQUENCE_NAME FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_SCHEMA = 'PUBLIC'", String.class);
+        for (String sequence : sequences) {
+            jdbc.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + (games + 1_000));
+        }
+        jdbc.execute("ANALYZE");
+        // H2 keeps each session's query plans, and the ones made at startup were made for empty tables
+        // (a nested loop scanning player, say); fresh connections plan against the seeded data
+        context.getBean(HikariDataSource.class).getHikariPoolMXBean().softEvictConnections();
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public int port() { // with serving()
+        return context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+    }
+
+    public int users() {
+        return users;
+    }
+
+    public int games() {
+        return games;
+    }
+
+    public long randomGameId() {
+        return ThreadLocalRandom.current().nextLong(1, games + 1);
+    }
+
+    public long randomOpenGameId() { // every 4th game is ACTIVE
+        long id = randomGameId();
+        return id % 4 == 0 ? id - 1 : id;
+    }
+
+    public String randomUserName() {
+        return "user" + ThreadLocalRandom.current().nextInt(1, users + 1);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.accessing_data_rest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// How many concurrent clients the REST layer sustains with platform request threads (the
+// default) and with virtual ones (spring.threads.virtual.enabled=true, Java 21+).
+//
+// Each mode gets its own application (LobbyFixture.serving) on a seeded in-memory lobby. Closed-loop
+// clients then hit it over HTTP, each one sending a request, waiting for the answer, thinking for a
+// while and going again, with a mix of the games, players and users endpoints:
+//   40% GET /games/{id}/canjoin   20% GET /games/{id}   15% GET /users/searchusers
+//   15% GET /players/user/{id}    10% POST /games/{id}/join
+// The number of clients doubles every step. A step is sustained while its p99 stays within the
+// SLO and under 1% of requests fail (5xx, or no answer within the timeout); 400s, such as "already
+// joined", are answers. The run stops at the first step that isn't sustained.
+//
+//   mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=com.example.accessing_data_rest.LobbyLoadGenerator
+//   ... -Dbenchmark.args="--modes=virtual --clients=100,200,400,800,1600,3200 --slo-ms=250"
+//
+// Options (defaults): --modes=platform,virtual --games=10000 --clients=50,100,200,400,800,1600
+// --think-ms=50 --warmup-seconds=30 --step-seconds=10 --slo-ms=200. The client threads compete with the server for the
+// same cores, so compare the modes against each other on the same machine, not across machines.
+public final class LobbyLoadGenerator {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(5);
+    private static final int SETTLE_SECONDS = 2;         // after adding clients, before measuring
+    private static final double MAX_ERROR_RATE = 0.01;
+
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(REQUEST_TIMEOUT)
+            .build();
+    private final LobbyFixture lobby;
+    private final String base;
+    private final long thinkMillis;
+    private final Latencies latencies = new Latencies();
+    private final List<Thread> clients = new ArrayList<>();
+    private volatile boolean running = true;
+
+    private LobbyLoadGenerator(LobbyFixture lobby, long thinkMillis) {
+        this.lobby = lobby;
+        this.base = "http://localhost:" + lobby.port();
+        this.thinkMillis = thinkMillis;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = new LinkedHashMap<>(Map.of(
+                "modes", "platform,virtual", "games", "10000", "clients", "50,100,200,400,800,1600",
+                "think-ms", "50", "warmup-seconds", "30", "step-seconds", "10", "slo-ms", "200"));
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            if (option.length != 2 || !options.containsKey(option[0])) {
+                throw new IllegalArgumentException("Unknown option " + arg + ", expected one of " + options.keySet());
+            }
+            options.put(option[0], option[1]);
+        }
+        int games = Integer.parseInt(options.get("games"));
+        long think = Long.parseLong(options.get("think-ms"));
+        int warmupSeconds = Integer.parseInt(options.get("warmup-seconds"));
+        int stepSeconds = Integer.parseInt(options.get("step-seconds"));
+        double slo = Double.parseDouble(options.get("slo-ms"));
+        int[] steps = parseInts(options.get("clients"));
+
+        if (Runtime.version().feature() < 21 && options.get("modes").contains("virtual")) {
+            System.out.printf("NOTE: Java %d has no virtual threads; Spring Boot ignores spring.threads.virtual.enabled,"
+                    + " so the virtual mode below runs on platform threads too.%n", Runtime.version().feature());
+        }
+        Map<String, Integer> sustained = new LinkedHashMap<>();
+        for (String mode : options.get("modes").split(",")) {
+            boolean virtual = switch (mode) {
+                case "platform" -> false;
+                case "virtual" -> true;
+                default -> throw new IllegalArgumentException("Unknown mode " + mode + ", expected platform or virtual");
+            };
+            try (LobbyFixture lobby = LobbyFixture.serving(games, "spring.threads.virtual.enabled=" + virtual)) {
+                sustained.put(mode, new LobbyLoadGenerator(lobby, think).ramp(mode, steps, warmupSeconds, stepSeconds, slo));
+            }
+        }
+
+        System.out.printf("%nMax sustained concurrent clients (p99 <= %.0f ms, errors < %.0f%%), %d games, %d cores%n",
+                slo, MAX_ERROR_RATE * 100, games, Runtime.getRuntime().availableProcessors());
+        sustained.forEach((mode, clients) -> System.out.printf("%-10s %s%n", mode, clients > 0 ? clients : "none"));
+    }
+
+    // the largest step that was sustained, or 0
+    private int ramp(String mode, int[] steps, int warmupSeconds, int stepSeconds, double slo) throws InterruptedException {
+        System.out.printf("%n%s request threads%n", mode);
+        System.out.printf("%-8s %10s %10s %10s %10s %8s%n", "clients", "req/s", "p50 ms", "p99 ms", "max ms", "errors");
+        addClients(steps[0]); // warm-up (JIT, caches, pool) at the first step, not reported
+        TimeUnit.SECONDS.sleep(warmupSeconds);
+        int best = 0;
+        try {
+            for (int step : steps) {
+                addClients(step);
+                TimeUnit.SECONDS.sleep(SETTLE_SECONDS);
+                latencies.reset();
+                TimeUnit.SECONDS.sleep(stepSeconds);
+                Latencies.Snapshot result = latencies.snapshot();
+                double errorRate = result.count() == 0 ? 1 : (double) result.errors() / (result.count() + result.errors());
+                boolean ok = result.p99() <= slo && errorRate < MAX_ERROR_RATE;
+                System.out.printf("%-8d %10.0f %10.1f %10.1f %10.1f %7.2f%% %s%n", step, (double) result.count() / stepSeconds,
+                        result.p50(), result.p99(), result.max(), errorRate * 100, ok ? "" : "<- not sustained");
+                if (!ok) {
+                    break;
+                }
+                best = step;
+            }
+        } finally {
+            stopClients();
+        }
+        return best;
+    }
+
+    private void addClients(int total) {
+        while (clients.size() < total) {
+            Thread client = new Thread(this::client, "load-client-" + clients.size());
+            client.setDaemon(true);
+            client.start();
+            clients.add(client);
+        }
+    }
+
+    private void stopClients() throws InterruptedException {
+        running = false;
+        for (Thread client : clients) {
+            client.join(REQUEST_TIMEOUT.toMillis() + 1_000);
+        }
+    }
+
+    private void client() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (running) {
+            HttpRequest request = nextRequest(random);
+            long start = System.nanoTime();
+            try {
+                int status = http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                if (status >= 500) {
+                    latencies.error();
+                } else {
+                    latencies.record(System.nanoTime() - start);
+                }
+            } catch (IOException e) {
+                latencies.error(); // includes timeouts
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                Thread.sleep(random.nextLong(thinkMillis / 2, thinkMillis * 3 / 2 + 1)); // so clients don't march in step
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private HttpRequest nextRequest(ThreadLocalRandom random) {
+        int pick = random.nextInt(100);
+        String path;
+        if (pick < 40) {
+            path = "/games/" + lobby.randomOpenGameId() + "/canjoin?username=" + lobby.randomUserName();
+        } else if (pick < 60) {
+            path = "/games/" + lobby.randomOpenGameId();
+        } else if (pick < 75) {
+            path = "/users/searchusers?name=" + lobby.randomUserName();
+        } else if (pick < 90) {
+            path = "/players/user/" + random.nextInt(1, lobby.users() + 1);
+        } else {
+            return HttpRequest.newBuilder(URI.create(base + "/games/" + lobby.randomOpenGameId()
+                            + "/join?username=" + lobby.randomUserName()))
+                    .timeout(REQUEST_TIMEOUT)
+                    .POST(HttpRequest.BodyPublishers.noBody())
+                    .build();
+        }
+        return HttpRequest.newBuilder(URI.create(base + path)).timeout(REQUEST_TIMEOUT).GET().build();
+    }
+
+    private static int[] parseInts(String list) {
+        return Arrays.stream(list.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    // Response times in 0.1 ms buckets up to the request timeout, shared by all clients.
+    private static final class Latencies {
+        private static final long BUCKET_NANOS = 100_000;
+        private final AtomicLongArray buckets = new AtomicLongArray((int) (REQUEST_TIMEOUT.toNanos() / BUCKET_NANOS) + 1);
+        private final LongAdder errors = new LongAdder();
+
+        void record(long nanos) {
+            buckets.incrementAndGet((int) Math.min(nanos / BUCKET_NANOS, buckets.length() - 1));
+        }
+
+        void error() {
+            errors.increment();
+        }
+
+        void reset() {
+            for (int i = 0; i < buckets.length(); i++) {
+                buckets.set(i, 0);
+            }
+            errors.reset();
+        }
+
+        Snapshot snapshot() {
+            long[] counts = new long[buckets.length()];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            return new Snapshot(counts, total, errors.sum());
+        }
+
+        record Snapshot(long[] counts, long count, long errors) {
+            double p50() {
+                return percentile(0.50);
+            }
+
+            double p99() {
+                return percentile(0.99);
+            }
+
+            double max() {
+                for (int i = counts.length - 1; i >= 0; i--) {
+                    if (counts[i] > 0) {
+                        return millis(i);
+                    }
+                }
+                return 0;
+            }
+
+            private double percentile(double p) {
+                long rank = (long) Math.ceil(count * p);
+                long seen = 0;
+                for (int i = 0; i < counts.length; i++) {
+                    seen += counts[i];
+                    if (seen >= rank && seen > 0) {
+                        return millis(i);
+                    }
+                }
+                return 0;
+            }
+
+            private static double millis(int bucket) {
+                return (bucket + 1) * BUCKET_NANOS / 1e6; // upper edge of the bucket
+            }
+        }
+    }
+}
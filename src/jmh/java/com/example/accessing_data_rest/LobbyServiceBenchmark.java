@@ -0,0 +1,137 @@
+package com.example.accessing_data_rest;
+
+import com.example.accessing_data_rest.dto.GameSummary;
+import com.example.accessing_data_rest.model.Game;
+import com.example.accessing_data_rest.service.GameService;
+import com.example.accessing_data_rest.service.UserService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Service-level hot paths against a seeded lobby of 1k, 100k and 1M games (see LobbyFixture).
+// These go through the real services, transactions and H2, the way a request does,
+// minus HTTP. Use them as the before/after numbers for performance work.
+//
+//   mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="LobbyServiceBenchmark"
+//   mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="LobbyServiceBenchmark.joinGame -p games=100000"
+//   mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="LobbyServiceBenchmark -p engine=false,true"
+//
+// engine=true runs with the in-memory lobby engine (lobby.engine.enabled), where canJoin,
+// join and leave are answered from memory and saved behind.
+//
+// joinGame and createGame add rows as they run, so the lobby grows a little over a trial.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class LobbyServiceBenchmark {
+
+    private static final Pageable FIRST_PAGE = PageRequest.of(0, 50, Sort.by("uid"));
+    private static final Pageable SEARCH_PAGE = PageRequest.of(0, 20);
+
+    @Param({"1000", "100000", "1000000"})
+    public int games;
+
+    @Param({"false"})
+    public boolean engine;
+
+    private final AtomicLong names = new AtomicLong();
+    private LobbyFixture lobby;
+    private GameService gameService;
+    private UserService userService;
+    private ObjectMapper objectMapper;
+
+    private List<Game> gamesWithPlayers;   // what a page of entities costs to write out
+    private List<GameSummary> summaries;   // ... and the projection the listings really return
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        lobby = new LobbyFixture(games, "lobby.engine.enabled=" + engine);
+        gameService = lobby.bean(GameService.class);
+        userService = lobby.bean(UserService.class);
+        objectMapper = lobby.bean(ObjectMapper.class);
+
+        gamesWithPlayers = new ArrayList<>();
+        for (long id = 1; id <= 50; id++) {
+            gamesWithPlayers.add(gameService.getGameWithPlayers(id));
+        }
+        summaries = gameService.getOpenGames(FIRST_PAGE).getContent();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        lobby.close();
+    }
+
+    @Benchmark
+    public Game joinGame() {
+        return gameService.joinGame(lobby.randomOpenGameId(), "joiner" + names.incrementAndGet());
+    }
+
+    @Benchmark
+    public boolean canJoinGame() {
+        return gameService.canJoinGame(lobby.randomOpenGameId(), "joiner");
+    }
+
+    @Benchmark
+    public Game createGame() {
+        return gameService.createGame("bench" + names.incrementAndGet(), 2, 8, lobby.randomUserName());
+    }
+
+    @Benchmark
+    public Slice<GameSummary> getOpenGamesFirstPage() {
+        return gameService.getOpenGames(FIRST_PAGE);
+    }
+
+    @Benchmark
+    public Slice<GameSummary> getOpenGamesDeepPage() { // keyset: a random place in the lobby
+        return gameService.getOpenGamesAfter(lobby.randomGameId(), 50);
+    }
+
+    // name search in open games with a free seat: "game1234" matches game1234 and game12340..12349;
+    // contains looks for a game's number anywhere, fuzzy for a name with two letters swapped
+    @Benchmark
+    public Slice<GameSummary> searchPrefix() {
+        return search("game" + lobby.randomGameId() / 10, GameService.SearchMatch.PREFIX);
+    }
+
+    @Benchmark
+    public Slice<GameSummary> searchContains() {
+        return search(String.valueOf(lobby.randomGameId() + 100), GameService.SearchMatch.CONTAINS);
+    }
+
+    @Benchmark
+    public Slice<GameSummary> searchFuzzy() {
+        return search("gmae" + lobby.randomGameId(), GameService.SearchMatch.FUZZY);
+    }
+
+    private Slice<GameSummary> search(String name, GameService.SearchMatch match) {
+        return gameService.searchGames(name, match, Game.GameStatus.SIGNUP, 1, SEARCH_PAGE);
+    }
+
+    @Benchmark
+    public Object signIn() {
+        return userService.signIn(lobby.randomUserName());
+    }
+
+    @Benchmark
+    public byte[] serializeGameEntities() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(gamesWithPlayers);
+    }
+
+    @Benchmark
+    public byte[] serializeGameSummaries() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(summaries);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.accessing_data_rest;
+
+import com.example.accessing_data_rest.model.Game;
+import com.example.accessing_data_rest.model.User;
+import com.example.accessing_data_rest.service.GameService;
+import com.example.accessing_data_rest.service.UserCache;
+import com.example.accessing_data_rest.service.UserService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// The calls behind LobbyStore, with lobby.store=jpa (repositories, Hibernate, second-level cache)
+// and lobby.store=jdbc (hand-written SQL), on a seeded lobby (see LobbyFixture):
+//  - joinAndLeave:   a user joins a random open game and leaves it again, two transactions
+//  - canJoinGame:    the probe, read by game id
+//  - showGame:       a game with its roster and their users, as joinGame answers
+//  - signIn:         a user lookup, served by UserCache after the first one
+//  - signInUncached: the same with the UserCache entry dropped first, so it reaches the store
+//
+//   mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="LobbyStoreBenchmark"
+//   mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="LobbyStoreBenchmark.joinAndLeave -p games=1000000"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class LobbyStoreBenchmark {
+
+    @Param({"jpa", "jdbc"})
+    public String store;
+
+    @Param({"100000"})
+    public int games;
+
+    private LobbyFixture lobby;
+    private GameService gameService;
+    private UserService userService;
+    private UserCache userCache;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        lobby = new LobbyFixture(games, "lobby.store=" + store);
+        gameService = lobby.bean(GameService.class);
+        userService = lobby.bean(UserService.class);
+        userCache = lobby.bean(UserCache.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        lobby.close();
+    }
+
+    @Benchmark
+    public long joinAndLeave() {
+        long gameId = lobby.randomOpenGameId();
+        String username = "user" + (gameId % lobby.users() + 1); // a registered user, never the owner (see LobbyFixture)
+        gameService.joinGame(gameId, username);
+        gameService.leaveGame(gameId, username);
+        return gameId;
+    }
+
+    @Benchmark
+    public boolean canJoinGame() {
+        return gameService.canJoinGame(lobby.randomOpenGameId(), "joiner");
+    }
+
+    @Benchmark
+    public Game showGame() {
+        return gameService.getGameWithPlayers(lobby.randomGameId());
+    }
+
+    @Benchmark
+    public User signIn() {
+        return userService.signIn(lobby.randomUserName());
+    }
+
+    @Benchmark
+    public User signInUncached() {
+        String name = lobby.randomUserName();
+        userCache.evict(name);
+        return userService.signIn(name);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.accessing_data_rest.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Contention benchmark for GameLockManager. Each operation holds a lock for a
+// small, fixed amount of work, standing in for one game state change.
+//  - distinctGames: every thread changes its own game, should scale with cores
+//  - sameGame:      every thread changes game 0, serialized by design
+//  - globalLock:    one lock for all games, the alternative we didn't want
+// main() runs all three at 1, 2, 4 ... up to the number of cores and prints ops/ms per thread count.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameLockManagerBenchmark {
+
+    private static final int WORK_TOKENS = 256; // time spent "inside" a game change
+
+    private final GameLockManager gameLocks = new GameLockManager();
+    private final ReentrantLock globalLock = new ReentrantLock();
+
+    @State(Scope.Thread)
+    public static class ThreadGame {
+        private static final AtomicLong NEXT_GAME_ID = new AtomicLong(1);
+        long gameId;
+        long changes;
+
+        @Setup
+        public void pickGame() {
+            gameId = NEXT_GAME_ID.getAndIncrement();
+        }
+    }
+
+    @Benchmark
+    public long distinctGames(ThreadGame game) {
+        return gameLocks.withLock(game.gameId, () -> change(game));
+    }
+
+    @Benchmark
+    public long sameGame(ThreadGame game) {
+        return gameLocks.withLock(0L, () -> change(game));
+    }
+
+    @Benchmark
+    public long globalLock(ThreadGame game) {
+        globalLock.lock();
+        try {
+            return change(game);
+        } finally {
+            globalLock.unlock();
+        }
+    }
+
+    private static long change(ThreadGame game) {
+        Blackhole.consumeCPU(WORK_TOKENS);
+        return ++game.changes;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        Map<Integer, Collection<RunResult>> byThreads = new LinkedHashMap<>();
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            byThreads.put(threads, new Runner(new OptionsBuilder()
+                    .include(GameLockManagerBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build()).run());
+        }
+
+        System.out.printf("%nThroughput (ops/ms) by thread count, %d cores%n", cores);
+        System.out.printf("%-8s %15s %15s %15s%n", "threads", "distinctGames", "sameGame", "globalLock");
+        byThreads.forEach((threads, results) -> {
+            Map<String, Double> scores = new LinkedHashMap<>();
+            for (RunResult result : results) {
+                String label = result.getParams().getBenchmark();
+                scores.put(label.substring(label.lastIndexOf('.') + 1), result.getPrimaryResult().getScore());
+            }
+            System.out.printf("%-8d %15.1f %15.1f %15.1f%n", threads,
+                    scores.get("distinctGames"), scores.get("sameGame"), scores.get("globalLock"));
+        });
+    }
+}
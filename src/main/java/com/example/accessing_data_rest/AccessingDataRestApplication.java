@@ -2,8 +2,10 @@ package com.example.accessing_data_rest;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling // background jobs, e.g. PlayerCountReconciler, GameReaper
 public class AccessingDataRestApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,154 @@
+package com.example.accessing_data_rest.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.DestructionAwareBeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// For the in-memory database of the h2-memory profile (lobby.h2.checkpoint.enabled): keeps a copy
+// of it in lobby.h2.checkpoint.file, so a restart picks up where the last copy left off.
+//  - when the DataSource is ready, before Hibernate looks at the schema, a checkpoint that is there
+//    is run back in (RUNSCRIPT)
+//  - every lobby.h2.checkpoint.interval, and once more just before the DataSource closes (after
+//    everything that writes, the engine's write-behind included, has stopped), the database is
+//    written out with SCRIPT, zipped, to a temp file that then replaces the checkpoint
+// SCRIPT runs in a SNAPSHOT transaction, so a checkpoint is consistent across tables while writers
+// carry on. It uses its own connection to the same database, not one from the pool.
+//
+// A post-processor rather than a bean with @Scheduled / @PreDestroy: it has to act on the DataSource
+// itself, before its first user and after its last one. Post-processors don't get @Scheduled, hence
+// the thread of its own.
+@Component
+@ConditionalOnProperty(name = "lobby.h2.checkpoint.enabled", havingValue = "true")
+public class H2Checkpointer implements DestructionAwareBeanPostProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(H2Checkpointer.class);
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final Path file;
+    private final Duration interval;
+
+    private final ReentrantLock lock = new ReentrantLock(); // one checkpoint at a time
+    private ScheduledExecutorService scheduler;
+    private DataSource dataSource;
+
+    public H2Checkpointer(@Value("${spring.datasource.url}") String url,
+                          @Value("${spring.datasource.username:}") String username,
+                          @Value("${spring.datasource.password:}") String password,
+                          @Value("${lobby.h2.checkpoint.file}") String file,
+                          @Value("${lobby.h2.checkpoint.interval:1m}") Duration interval) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.file = Paths.get(file).toAbsolutePath();
+        this.interval = interval;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource ready && dataSource == null) {
+            dataSource = ready;
+            restore();
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "h2-checkpoint");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::checkpointQuietly, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        return bean;
+    }
+
+    @Override
+    public boolean requiresDestruction(Object bean) {
+        return bean == dataSource;
+    }
+
+    @Override
+    public void postProcessBeforeDestruction(Object bean, String beanName) {
+        if (bean == dataSource) {
+            scheduler.shutdownNow();
+            checkpointQuietly();
+        }
+    }
+
+    // returns how long it took
+    public Duration checkpoint() throws SQLException, IOException {
+        lock.lock();
+        try {
+            long started = System.nanoTime();
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (Connection connection = DriverManager.getConnection(url, username, password);
+                 Statement statement = connection.createStatement()) {
+                statement.execute("SET SESSION CHARACTERISTICS AS TRANSACTION ISOLATION LEVEL SNAPSHOT");
+                connection.setAutoCommit(false);
+                statement.execute("SCRIPT TO " + literal(tmp) + " COMPRESSION ZIP");
+                connection.commit();
+            }
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Duration took = Duration.ofNanos(System.nanoTime() - started);
+            log.info("Checkpointed the database to {} ({} KB) in {} ms", file, Files.size(file) / 1024, took.toMillis());
+            return took;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (SQLException | IOException | RuntimeException e) {
+            log.error("Could not checkpoint the database to {}, keeping the previous one", file, e);
+        }
+    }
+
+    private void restore() {
+        if (!Files.exists(file)) {
+            log.info("No database checkpoint at {}, starting empty", file);
+            return;
+        }
+        long started = System.nanoTime();
+        try (Connection connection = DriverManager.getConnection(url, username, password);
+             Statement statement = connection.createStatement()) {
+            try (ResultSet tables = statement.executeQuery(
+                    "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = 'PUBLIC'")) {
+                if (tables.next() && tables.getLong(1) > 0) {
+                    // DB_CLOSE_DELAY=-1 kept it alive: a context restarted in the same JVM
+                    log.info("The database is still there, not restoring it from {}", file);
+                    return;
+                }
+            }
+            statement.execute("RUNSCRIPT FROM " + literal(file) + " COMPRESSION ZIP");
+        } catch (SQLException e) {
+            // better to stop than to start empty and overwrite the checkpoint with nothing
+            throw new IllegalStateException("Could not restore the database from " + file, e);
+        }
+        log.info("Restored the database from {} in {} ms", file, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private static String literal(Path path) {
+        return "'" + path.toString().replace("'", "''") + "'";
+    }
+}
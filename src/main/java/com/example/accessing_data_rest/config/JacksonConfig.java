@@ -0,0 +1,18 @@
+package com.example.accessing_data_rest.config;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.datatype.hibernate6.Hibernate6Module;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class JacksonConfig {
+
+    // Teaches Jackson about Hibernate's lazy collections and proxies: anything the
+    // query didn't fetch is written as null instead of triggering a load (or failing,
+    // since open-in-view is off). Spring Boot registers Module beans automatically.
+    @Bean
+    public Module hibernateModule() {
+        return new Hibernate6Module();
+    }
+}
@@ -1,14 +1,29 @@
 package com.example.accessing_data_rest.controller;
 
+import com.example.accessing_data_rest.dto.BulkJoinRequest;
+import com.example.accessing_data_rest.dto.BulkJoinResult;
+import com.example.accessing_data_rest.dto.GameSummary;
 import com.example.accessing_data_rest.model.Game;
 import com.example.accessing_data_rest.service.GameService;
+import com.example.accessing_data_rest.service.LobbyFeed;
+import com.example.accessing_data_rest.service.MatchmakingService;
+import com.example.accessing_data_rest.service.PlayerService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/games")
@@ -17,25 +32,112 @@ public class GameController {
     @Autowired
     private GameService gameService;
 
+    @Autowired
+    private PlayerService playerService;
+
+    @Autowired
+    private LobbyFeed lobbyFeed;
+
+    @Autowired
+    private MatchmakingService matchmaking;
+
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final Set<String> SORTABLE_PROPERTIES = Set.of("uid", "name", "minPlayers", "maxPlayers", "owner", "status");
+    private static final String STARTED = Long.toString(System.currentTimeMillis(), 36); // the lobby version restarts at 0
+
     // GET
+    // Both listings are paged. ?page=&size=&sort=name,desc for classic paging,
+    // or ?after=<uid>&size= for keyset paging, which stays equally fast on deep pages.
+    // When results are in uid order and there is more to fetch, the uid to pass as "after"
+    // is in the X-Next-Cursor header.
+    // Pollers should send back the ETag in If-None-Match: while nothing in the lobby changed,
+    // the answer is a 304 straight from memory.
     @GetMapping(value = "/allgames", produces = "application/json")
-    public List<Game> getAllGames() {
-        return gameService.getGames();
+    public ResponseEntity<?> getAllGames(@RequestParam(value = "page", defaultValue = "0") int page,
+                                         @RequestParam(value = "size", defaultValue = "50") int size,
+                                         @RequestParam(value = "sort", defaultValue = "uid") String sort,
+                                         @RequestParam(value = "after", required = false) Long after,
+                                         WebRequest request) {
+        if (request.checkNotModified(lobbyEtag())) {
+            return null; // 304, nothing read
+        }
+        try {
+            Slice<GameSummary> games = after != null
+                ? gameService.getGamesAfter(after, checkSize(size))
+                : gameService.getGames(pageRequest(page, size, sort));
+            return pageResponse(games, after != null || isUidOrder(sort));
+        } catch (IllegalStateException e) {
+            return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("message", e.getMessage()));
+        }
     }
 
     @GetMapping(value = "/opengames", produces = "application/json")   // for SOG
-    public List<Game> getOpenGames() {
-        return gameService.getOpenGames();
+    public ResponseEntity<?> getOpenGames(@RequestParam(value = "page", defaultValue = "0") int page,
+                                          @RequestParam(value = "size", defaultValue = "50") int size,
+                                          @RequestParam(value = "sort", defaultValue = "uid") String sort,
+                                          @RequestParam(value = "after", required = false) Long after,
+                                          WebRequest request) {
+        if (request.checkNotModified(lobbyEtag())) {
+            return null;
+        }
+        try {
+            Slice<GameSummary> games = after != null
+                ? gameService.getOpenGamesAfter(after, checkSize(size))
+                : gameService.getOpenGames(pageRequest(page, size, sort));
+            return pageResponse(games, after != null || isUidOrder(sort));
+        } catch (IllegalStateException e) {
+            return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("message", e.getMessage()));
+        }
     }
     
-    @GetMapping(value = "/searchgames", produces = "application/json") // NB: Just searches by name. could be 
-    public List<Game> searchGames(@RequestParam("name") String name) { // renamed to getGamesByName or smth 
-        return gameService.searchGames(name);                          
+    // Live lobby changes as Server-Sent Events, instead of polling /opengames.
+    // Load a listing once, then apply the events. Browsers resume by themselves with
+    // Last-Event-ID; other clients can pass ?since=<last seq seen>. A RESYNC event means
+    // the gap was too big to replay: reload the listing and carry on.
+    @GetMapping(value = "/feed", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter lobbyFeed(@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+                                @RequestParam(value = "since", required = false) Long since) {
+        return lobbyFeed.openStream(lastEventId != null ? lastEventId : since);
     }
 
+    // Search by name: ?name=&match=exact|prefix|contains|fuzzy (exact by default), narrowed
+    // with &status=SIGNUP and &minFreeSeats=1, paged with ?page=&size=. Contains and fuzzy
+    // ignore case and need at least 3 characters; fuzzy answers best match first.
+    // No ETag: contains and fuzzy read an index that catches up just after the commit.
+    @GetMapping(value = "/searchgames", produces = "application/json")
+    public ResponseEntity<?> searchGames(@RequestParam("name") String name,
+                                         @RequestParam(value = "match", defaultValue = "exact") String match,
+                                         @RequestParam(value = "status", required = false) String status,
+                                         @RequestParam(value = "minFreeSeats", defaultValue = "0") int minFreeSeats,
+                                         @RequestParam(value = "page", defaultValue = "0") int page,
+                                         @RequestParam(value = "size", defaultValue = "50") int size) {
+        try {
+            Slice<GameSummary> games = gameService.searchGames(name,
+                parseEnum(GameService.SearchMatch.class, match, "search match"),
+                status != null ? parseEnum(Game.GameStatus.class, status, "game status") : null,
+                minFreeSeats,
+                PageRequest.of(checkPage(page), checkSize(size)));
+            return pageResponse(games, false);
+        } catch (IllegalStateException e) {
+            return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    // ETag: the game's version. A 304 costs one look at the (usually cached) game row;
+    // the roster is only read and serialized when something changed.
     @GetMapping(value = "/{id}", produces = "application/json")
-    public Game getGameById(@PathVariable Long id) {
-        return gameService.getGameById(id);
+    public Game getGameById(@PathVariable Long id, WebRequest request) {
+        if (request.checkNotModified("W/\"game-" + id + "-" + gameService.getGameVersion(id) + "\"")) {
+            return null;
+        }
+        return gameService.getGameWithPlayers(id);
     }
 
     @GetMapping(value = "/{id}/canjoin", produces = "application/json")
@@ -75,6 +177,60 @@ public class GameController {
         }
     }
 
+    // Many users at once, e.g. {"usernames": ["ann", "bo"]} or {"userIds": [3, 4]}.
+    // Answers with one result per user (JOINED, ALREADY_JOINED, NO_SUCH_USER, GAME_FULL).
+    @PostMapping(value = "/{id}/bulkjoin", consumes = "application/json", produces = "application/json")
+    public ResponseEntity<?> bulkJoinGame(@PathVariable Long id, @RequestBody BulkJoinRequest request) {
+        try {
+            List<BulkJoinResult> results = playerService.joinGameBulk(id, request.usernames(), request.userIds());
+            return ResponseEntity.ok(results);
+        } catch (IllegalStateException e) {
+            return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity
+                .status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("message", "An unexpected error occurred while joining the game"));
+        }
+    }
+
+    // Quick join: queue for any open game of the given size instead of picking one from the
+    // listing. Answers 202 with a ticket; poll it until it says JOINED or CREATED (then gameId
+    // is set) or FAILED. Queueing again while waiting returns the same ticket.
+    @PostMapping(value = "/quickjoin", produces = "application/json")
+    public ResponseEntity<?> quickJoin(@RequestParam("username") String username,
+                                       @RequestParam(value = "minPlayers", defaultValue = "2") int minPlayers,
+                                       @RequestParam(value = "maxPlayers", defaultValue = "8") int maxPlayers) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(matchmaking.enqueue(username, minPlayers, maxPlayers));
+        } catch (IllegalStateException e) {
+            return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    @GetMapping(value = "/quickjoin/{ticket}", produces = "application/json")
+    public ResponseEntity<?> getQuickJoinTicket(@PathVariable long ticket) {
+        return matchmaking.getTicket(ticket)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity
+                    .status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("message", "No such ticket (tickets are kept a few minutes after they settle)")));
+    }
+
+    @DeleteMapping(value = "/quickjoin/{ticket}", produces = "application/json")
+    public ResponseEntity<?> cancelQuickJoin(@PathVariable long ticket, @RequestParam("username") String username) {
+        try {
+            return ResponseEntity.ok(matchmaking.cancel(ticket, username));
+        } catch (IllegalStateException e) {
+            return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("message", e.getMessage()));
+        }
+    }
+
     @PostMapping(value = "/{id}/leave")
     public ResponseEntity<?> leaveGame(@PathVariable Long id, @RequestParam("username") String username) {
         try {
@@ -108,6 +264,23 @@ public class GameController {
         }
     }
 
+    @PostMapping(value = "/{id}/finish")
+    public ResponseEntity<?> finishGame(@PathVariable Long id, @RequestParam("username") String username) {
+        try {
+            gameService.finishGame(id, username);
+            return ResponseEntity.ok()
+                .body(Map.of("message", "Game finished successfully"));
+        } catch (IllegalStateException e) {
+            return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity
+                .status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("message", "An unexpected error occurred while finishing the game"));
+        }
+    }
+
     // DELETE
     @DeleteMapping(value = "/{id}")
     public ResponseEntity<?> deleteGame(@PathVariable Long id, @RequestParam("username") String username) {
@@ -124,4 +297,65 @@ public class GameController {
                 .body(Map.of("message", "An unexpected error occurred while deleting the game"));
         }
     }
-} 
\ No newline at end of file
+
+    // Taken before the listing is read: a change landing in between makes the next poll
+    // download again, rather than keep a stale page. Weak, as the same lobby state always
+    // gives the same data but not necessarily the same bytes.
+    private String lobbyEtag() {
+        return "W/\"lobby-" + STARTED + "-" + lobbyFeed.lobbyVersion() + "\"";
+    }
+
+    // paging helpers for the lobby listings
+    private ResponseEntity<List<GameSummary>> pageResponse(Slice<GameSummary> games, boolean uidOrder) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (uidOrder && games.hasNext() && games.hasContent()) { // a uid cursor only means something in uid order
+            List<GameSummary> content = games.getContent();
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(content.get(content.size() - 1).uid()));
+        }
+        return response.body(games.getContent());
+    }
+
+    private Pageable pageRequest(int page, int size, String sort) {
+        checkPage(page);
+        String[] parts = sort.split(",");            // "name" or "name,desc"
+        String property = parts[0].trim();
+        if (!SORTABLE_PROPERTIES.contains(property)) {
+            throw new IllegalStateException("Cannot sort games by: " + property);
+        }
+        Sort.Direction direction = parts.length > 1 && parts[1].trim().equalsIgnoreCase("desc")
+            ? Sort.Direction.DESC
+            : Sort.Direction.ASC;
+        Sort order = Sort.by(direction, property);
+        if (!property.equals("uid")) {
+            order = order.and(Sort.by("uid"));     // tie-breaker so pages don't overlap
+        }
+        return PageRequest.of(page, checkSize(size), order);
+    }
+
+    private boolean isUidOrder(String sort) {
+        String normalized = sort.replace(" ", "");
+        return normalized.equals("uid") || normalized.equalsIgnoreCase("uid,asc");
+    }
+
+    private int checkPage(int page) {
+        if (page < 0) {
+            throw new IllegalStateException("Page cannot be negative");
+        }
+        return page;
+    }
+
+    private <E extends Enum<E>> E parseEnum(Class<E> type, String value, String what) {
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Unknown " + what + ": " + value);
+        }
+    }
+
+    private int checkSize(int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalStateException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return size;
+    }
+}
@@ -1,8 +1,10 @@
 package com.example.accessing_data_rest.controller;
 
+import com.example.accessing_data_rest.dto.GameSummary;
 import com.example.accessing_data_rest.model.Player;
 import com.example.accessing_data_rest.service.PlayerService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -32,6 +34,11 @@ public class PlayerController {
         return playerService.getPlayersByUser(userId);
     }
 
+    @GetMapping(value = "/players/user/{userId}/games", produces = "application/json") // "my games"
+    public List<GameSummary> getGamesByUser(@PathVariable Long userId) {
+        return playerService.getGamesByUser(userId);
+    }
+
     // POST
     // this is all necessary for HAL links to work.
     @PostMapping(value = "/player", consumes = "application/json")
@@ -50,6 +57,10 @@ public class PlayerController {
             return ResponseEntity
                 .status(HttpStatus.BAD_REQUEST)
                 .body(Map.of("message", e.getMessage()));
+        } catch (OptimisticLockingFailureException e) { // someone else took a seat in the same game first
+            return ResponseEntity
+                .status(HttpStatus.CONFLICT)
+                .body(Map.of("message", "The game changed while you were joining, please try again"));
         } catch (Exception e) {             // for unexpected errors
             return ResponseEntity
                 .status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -1,5 +1,6 @@
 package com.example.accessing_data_rest.controller;
 
+import com.example.accessing_data_rest.dto.UserSummary;
 import com.example.accessing_data_rest.model.User;
 import com.example.accessing_data_rest.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,7 +25,7 @@ public class UserController {
     }
     
     @GetMapping(value = "/searchusers", produces = "application/json")
-    public List<User> searchUsers(@RequestParam("name") String name) {
+    public List<UserSummary> searchUsers(@RequestParam("name") String name) {
         return userService.searchUsers(name);
     }
 
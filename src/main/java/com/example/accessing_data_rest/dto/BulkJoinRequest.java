@@ -0,0 +1,7 @@
+package com.example.accessing_data_rest.dto;
+
+import java.util.List;
+
+// Body of POST /games/{id}/bulkjoin: users by name, by id, or both.
+public record BulkJoinRequest(List<String> usernames, List<Long> userIds) {
+}
@@ -0,0 +1,13 @@
+package com.example.accessing_data_rest.dto;
+
+// What happened to one user of a bulk join, in the order they were asked for.
+// username or userId is null when the user was asked for by the other one and doesn't exist.
+public record BulkJoinResult(String username, Long userId, Status status) {
+
+    public enum Status {
+        JOINED,
+        ALREADY_JOINED,
+        NO_SUCH_USER,
+        GAME_FULL
+    }
+}
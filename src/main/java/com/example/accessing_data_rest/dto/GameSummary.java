@@ -0,0 +1,21 @@
+package com.example.accessing_data_rest.dto;
+
+import com.example.accessing_data_rest.model.Game;
+
+// Flat view of a game for lobby listings and search: no roster, just the seat count.
+// Built directly by JPQL constructor queries in GameRepository, so no entity is loaded,
+// or from a game that is at hand anyway (e.g. from the second-level cache).
+public record GameSummary(
+        long uid,
+        String name,
+        int minPlayers,
+        int maxPlayers,
+        String owner,
+        Game.GameStatus status,
+        int playerCount) {
+
+    public static GameSummary of(Game game) {
+        return new GameSummary(game.getUid(), game.getName(), game.getMinPlayers(), game.getMaxPlayers(),
+                game.getOwner(), game.getStatus(), game.getPlayerCount());
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.accessing_data_rest.dto;
+
+import com.example.accessing_data_rest.model.Game;
+
+// One change in the lobby, as pushed to /games/feed subscribers (see LobbyFeed).
+// seq is gap-free and increasing, so a client that reconnects can say where it left off.
+// RESYNC means "you missed too much, reload the listing", and only carries seq.
+// Every other event carries the whole game row as of the change, so a client (or
+// GameSearchIndex) can add or update a listing entry without reading it again.
+// version is Game.version as committed; 0 from the lobby engine, whose changes are versioned
+// in the DB later, by LobbyWriteBehind, which then announces the game as saved.
+public record LobbyEvent(
+        long seq,
+        Type type,
+        long gameId,
+        String gameName,
+        String owner,
+        Game.GameStatus status,
+        int playerCount,
+        int minPlayers,
+        int maxPlayers,
+        long version,
+        String username) {
+
+    public enum Type {
+        GAME_CREATED,
+        PLAYER_JOINED,
+        PLAYER_LEFT,
+        STATUS_CHANGED,
+        GAME_DELETED,
+        RESYNC
+    }
+
+    public static LobbyEvent of(Type type, Game game, String username) { // seq is assigned when published
+        return new LobbyEvent(0, type, game.getUid(), game.getName(), game.getOwner(), game.getStatus(),
+                game.getPlayerCount(), game.getMinPlayers(), game.getMaxPlayers(), game.getVersion(), username);
+    }
+
+    public static LobbyEvent resync(long seq) {
+        return new LobbyEvent(seq, Type.RESYNC, 0, null, null, null, 0, 0, 0, 0, null);
+    }
+
+    public LobbyEvent withSeq(long seq) {
+        return new LobbyEvent(seq, type, gameId, gameName, owner, status, playerCount, minPlayers, maxPlayers, version, username);
+    }
+}
@@ -0,0 +1,6 @@
+package com.example.accessing_data_rest.dto;
+
+// "username sits in game gameId as player playerId", one per Player row; what LobbyEngine
+// rebuilds rosters from. username is the user's name, or the player's name if it has no user.
+public record LobbySeat(long gameId, long playerId, String username) {
+}
@@ -0,0 +1,5 @@
+package com.example.accessing_data_rest.dto;
+
+// A game whose stored Game.playerCount doesn't match its Player rows, see PlayerCountReconciler.
+public record PlayerCountDrift(long gameId, int playerCount, long actualPlayers) {
+}
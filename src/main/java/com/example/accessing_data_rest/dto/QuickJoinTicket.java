@@ -0,0 +1,15 @@
+package com.example.accessing_data_rest.dto;
+
+// A user's place in the matchmaking queue (see service.MatchmakingService), as the client polls it.
+// gameId is set once they have a seat; message says why a ticket failed.
+public record QuickJoinTicket(long ticket, String username, int minPlayers, int maxPlayers,
+                              Status status, Long gameId, String message) {
+
+    public enum Status {
+        WAITING,
+        JOINED,    // seated in an open game
+        CREATED,   // no game fitted, so they got a new one, as its owner
+        FAILED,
+        CANCELLED
+    }
+}
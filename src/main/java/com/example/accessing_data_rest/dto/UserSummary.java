@@ -0,0 +1,5 @@
+package com.example.accessing_data_rest.dto;
+
+// Flat view of a user (who, not which games), built directly by a JPQL constructor query.
+public record UserSummary(long uid, String name) {
+}
@@ -0,0 +1,68 @@
+package com.example.accessing_data_rest.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+// Times every public method of our services and controllers:
+//   lobby.service    {class, method, outcome}   e.g. GameService.joinGame
+//   lobby.controller {class, method, outcome}   e.g. GameController.joinGame
+// outcome is success, illegal_state (a rule said no: full, not your game...) or error.
+// The count of each timer doubles as the call counter, and the histogram gives percentiles.
+//
+// For a slow request, compare the layers: http.server.requests (whole request)
+// > lobby.controller (everything but writing the response, so the rest is serialization)
+// > lobby.service > spring.data.repository.invocations (the DB calls).
+// lobby.http.sql.statements tells how many statements a request ran (see SqlStatementCounter).
+@Aspect
+@Component
+public class OperationMetricsAspect {
+
+    static final String SERVICE_TIMER = "lobby.service";
+    static final String CONTROLLER_TIMER = "lobby.controller";
+
+    private final MeterRegistry registry;
+
+    public OperationMetricsAspect(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Around("execution(public * com.example.accessing_data_rest.service..*(..))"
+            + " && @within(org.springframework.stereotype.Service)")
+    public Object timeService(ProceedingJoinPoint call) throws Throwable {
+        return time(SERVICE_TIMER, call);
+    }
+
+    @Around("execution(public * com.example.accessing_data_rest.controller..*(..))"
+            + " && @within(org.springframework.web.bind.annotation.RestController)")
+    public Object timeController(ProceedingJoinPoint call) throws Throwable {
+        return time(CONTROLLER_TIMER, call);
+    }
+
+    private Object time(String name, ProceedingJoinPoint call) throws Throwable {
+        long start = System.nanoTime();
+        String outcome = "success";
+        try {
+            return call.proceed();
+        } catch (IllegalStateException e) {
+            outcome = "illegal_state";
+            throw e;
+        } catch (Throwable e) {
+            outcome = "error";
+            throw e;
+        } finally {
+            Timer.builder(name)
+                    .tag("class", call.getSignature().getDeclaringType().getSimpleName())
+                    .tag("method", call.getSignature().getName())
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(registry) // looked up after the first call, not re-created
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.accessing_data_rest.metrics;
+
+import com.example.accessing_data_rest.model.Game;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+import java.util.function.ToLongFunction;
+
+// Hit, miss and put counts of Hibernate's second-level cache, per region (Game, Game.players,
+// Player, User): lobby.cache.requests{region, result=hit|miss} and lobby.cache.puts{region}.
+// The hit rate is hits / (hits + misses). Read from Hibernate's statistics
+// (hibernate.generate_statistics), which count since startup.
+@Component
+public class SecondLevelCacheMetrics implements MeterBinder {
+
+    private static final String MODEL_PACKAGE = Game.class.getPackageName() + ".";
+
+    private final Statistics statistics;
+
+    public SecondLevelCacheMetrics(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            String name = region.startsWith(MODEL_PACKAGE) ? region.substring(MODEL_PACKAGE.length()) : region;
+            counter("lobby.cache.requests", region, CacheRegionStatistics::getHitCount)
+                    .tag("region", name).tag("result", "hit").register(registry);
+            counter("lobby.cache.requests", region, CacheRegionStatistics::getMissCount)
+                    .tag("region", name).tag("result", "miss").register(registry);
+            counter("lobby.cache.puts", region, CacheRegionStatistics::getPutCount)
+                    .tag("region", name).register(registry);
+        }
+    }
+
+    private FunctionCounter.Builder<Statistics> counter(String meter, String region,
+                                                        ToLongFunction<CacheRegionStatistics> count) {
+        return FunctionCounter.builder(meter, statistics, s -> {
+            CacheRegionStatistics stats = s.getCacheRegionStatistics(region);
+            return stats == null ? 0 : count.applyAsLong(stats);
+        });
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.accessing_data_rest.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+// Records how many SQL statements each request ran, as
+// lobby.http.sql.statements{method, uri}, uri being the route (/games/{id}/join), not the path.
+// A request runs on one thread here, which is what SqlStatementCounter counts by.
+@Component
+public class SqlPerRequestFilter extends OncePerRequestFilter {
+
+    private final SqlStatementCounter statements;
+    private final MeterRegistry registry;
+
+    public SqlPerRequestFilter(SqlStatementCounter statements, MeterRegistry registry) {
+        this.statements = statements;
+        this.registry = registry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        statements.begin();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            int count = statements.end();
+            Object route = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            DistributionSummary.builder("lobby.http.sql.statements")
+                    .tag("method", request.getMethod())
+                    .tag("uri", route != null ? route.toString() : "UNKNOWN")
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(count);
+        }
+    }
+}
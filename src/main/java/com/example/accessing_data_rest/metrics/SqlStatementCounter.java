@@ -0,0 +1,60 @@
+package com.example.accessing_data_rest.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Sees every SQL statement Hibernate prepares (registered in HibernateMetricsConfig).
+// Counts them by kind in lobby.sql.statements{kind=select|insert|update|delete|other},
+// and per thread, so SqlPerRequestFilter can tell how many statements one request ran.
+// Plain JdbcTemplate statements don't go through Hibernate and aren't counted.
+@Component
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<int[]> CURRENT = new ThreadLocal<>();
+
+    private final MeterRegistry registry;
+    private final Map<String, Counter> byKind = new ConcurrentHashMap<>();
+
+    public SqlStatementCounter(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        byKind.computeIfAbsent(kind(sql), k -> Counter.builder("lobby.sql.statements").tag("kind", k).register(registry))
+                .increment();
+        int[] count = CURRENT.get();
+        if (count != null) {
+            count[0]++;
+        }
+        return sql; // unchanged
+    }
+
+    // start counting for the current thread
+    public void begin() {
+        CURRENT.set(new int[1]);
+    }
+
+    // stop counting for the current thread and return how many statements ran since begin()
+    public int end() {
+        int[] count = CURRENT.get();
+        CURRENT.remove();
+        return count == null ? 0 : count[0];
+    }
+
+    private static String kind(String sql) {
+        String start = sql.stripLeading();
+        int space = start.indexOf(' ');
+        String verb = (space < 0 ? start : start.substring(0, space)).toLowerCase(Locale.ROOT);
+        return switch (verb) {
+            case "select", "insert", "update", "delete" -> verb;
+            default -> "other";
+        };
+    }
+}
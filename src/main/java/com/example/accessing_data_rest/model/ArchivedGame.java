@@ -0,0 +1,73 @@
+package com.example.accessing_data_rest.model;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+// A game that left the lobby for good: finished, or given up in signup (see GameReaper).
+// Written only by the reaper, in SQL; never read by the lobby, so it isn't cached.
+@Entity
+@Table(indexes = @Index(name = "idx_archived_game_archived_at", columnList = "archivedAt"))
+public class ArchivedGame {
+
+    @Id
+    @Column(name = "game_id")
+    private long uid; // the id it had in the game table
+
+    private String name;
+
+    private int minPlayers;
+
+    private int maxPlayers;
+
+    private String owner;
+
+    @Enumerated(EnumType.STRING)
+    private Game.GameStatus status; // FINISHED, or SIGNUP for an abandoned game
+
+    private int playerCount;
+
+    private Instant lastActivity;
+
+    private Instant archivedAt;
+
+    public ArchivedGame() {
+        // Required for JPA
+    }
+
+    public long getUid() {
+        return uid;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMinPlayers() {
+        return minPlayers;
+    }
+
+    public int getMaxPlayers() {
+        return maxPlayers;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public Game.GameStatus getStatus() {
+        return status;
+    }
+
+    public int getPlayerCount() {
+        return playerCount;
+    }
+
+    public Instant getLastActivity() {
+        return lastActivity;
+    }
+
+    public Instant getArchivedAt() {
+        return archivedAt;
+    }
+}
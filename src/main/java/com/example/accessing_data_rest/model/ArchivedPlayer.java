@@ -0,0 +1,40 @@
+package com.example.accessing_data_rest.model;
+
+import jakarta.persistence.*;
+
+// A seat in an archived game. Plain ids instead of associations: the game row is in
+// ArchivedGame, and the user may be gone by the time anyone looks.
+@Entity
+@Table(indexes = @Index(name = "idx_archived_player_game", columnList = "gameId"))
+public class ArchivedPlayer {
+
+    @Id
+    @Column(name = "player_id")
+    private long uid; // the id it had in the player table
+
+    private long gameId;
+
+    private String name;
+
+    private Long userId; // null for players that joined by name only
+
+    public ArchivedPlayer() {
+        // Required for JPA
+    }
+
+    public long getUid() {
+        return uid;
+    }
+
+    public long getGameId() {
+        return gameId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+}
@@ -3,10 +3,20 @@ package com.example.accessing_data_rest.model;
 import com.fasterxml.jackson.annotation.JsonIdentityInfo;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.UpdateTimestamp;
 
+import java.time.Instant;
 import java.util.List;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_game_status", columnList = "status"), // lobby listings filter on status
+        @Index(name = "idx_game_name", columnList = "name"),    // name lookups: exact and prefix search, createGame's check
+        @Index(name = "idx_game_status_activity", columnList = "status, lastActivity")}) // GameReaper's stale games
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE) // second-level cache, see application.properties
 @JsonIdentityInfo(
         scope=Game.class,
         generator = ObjectIdGenerators.PropertyGenerator.class,
@@ -15,7 +25,7 @@ public class Game {
 
     @Id
     @Column(name="game_id")
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @PooledSequence("game_seq") // same sequence AUTO used to pick, now handed out in blocks
     private long uid;
 
     private String name;
@@ -24,7 +34,8 @@ public class Game {
 
     private int maxPlayers;
 
-    @OneToMany(mappedBy="game", fetch = FetchType.EAGER)
+    @OneToMany(mappedBy="game") // lazy: only loaded when asked for, see GameRepository.findWithPlayersByUid
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE) // the ids; the players themselves are cached too
     private List<Player> players;
 
     private String owner;
@@ -39,9 +50,38 @@ public class Game {
     @Enumerated(EnumType.STRING) // for JPA/Hibernate DB stuff
     private GameStatus status = GameStatus.SIGNUP;
 
+    @ColumnDefault("0")
+    private int playerCount; // seats taken, moves together with the Player rows of this game
+
+    @Version // every seat change bumps this, so two joins racing for the last seat can't both commit
+    @ColumnDefault("0")
+    private long version;
+
+    @UpdateTimestamp // set on every write through Hibernate; LobbyWriteBehind sets it in SQL
+    @ColumnDefault("CURRENT_TIMESTAMP") // rows from before this column count as active now
+    private Instant lastActivity;
+
+    @Transient
+    private String namePrefix; // see nameAfterId
+
     public Game() {
         // Required for Jackson
     }
+
+    // Names a new game "<prefix> <uid>" (quick-join games, see MatchmakingService). The uid only
+    // exists once the game is saved, and a name set after that would cost an UPDATE on top of the
+    // INSERT; Hibernate runs @PrePersist after taking the uid from the sequence and before it reads
+    // the row's values, so this way the name goes in with the INSERT.
+    public void nameAfterId(String prefix) {
+        this.namePrefix = prefix;
+    }
+
+    @PrePersist
+    void appendUidToName() {
+        if (namePrefix != null) {
+            name = namePrefix + " " + uid;
+        }
+    }
     public long getUid() {
         return uid;
     }
@@ -99,4 +139,28 @@ public class Game {
         this.status = status;
     }
 
+    public int getPlayerCount() {
+        return playerCount;
+    }
+
+    public void setPlayerCount(int playerCount) {
+        this.playerCount = playerCount;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public Instant getLastActivity() {
+        return lastActivity;
+    }
+
+    public void setLastActivity(Instant lastActivity) {
+        this.lastActivity = lastActivity;
+    }
+
 }
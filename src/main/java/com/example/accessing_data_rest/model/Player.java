@@ -3,9 +3,14 @@ package com.example.accessing_data_rest.model;
 import com.fasterxml.jackson.annotation.JsonIdentityInfo;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_player_user_game", // a user sits in a game at most once;
+        columnNames = {"user_user_id", "game_game_id"}))                  // the index behind "my games" and the join check
 @JsonIdentityInfo(
         scope=Player.class,
         generator = ObjectIdGenerators.PropertyGenerator.class,
@@ -14,7 +19,7 @@ public class Player {
 
     @Id
     @Column(name="player_id")
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @PooledSequence("player_seq")
     private long uid;
 
     private String name;
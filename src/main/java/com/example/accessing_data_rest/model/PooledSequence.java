@@ -0,0 +1,18 @@
+package com.example.accessing_data_rest.model;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Id from a DB sequence, handed out in blocks (see PooledSequenceGenerator), e.g.
+//   @Id @PooledSequence("game_seq") private long uid;
+@IdGeneratorType(PooledSequenceGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface PooledSequence {
+
+    String value(); // sequence name
+}
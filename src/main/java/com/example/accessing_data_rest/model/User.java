@@ -3,11 +3,15 @@ package com.example.accessing_data_rest.model;
 import com.fasterxml.jackson.annotation.JsonIdentityInfo;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.List;
 
 @Entity
-@Table(name="user_table") // this is important! "user" is a keyword in H2 and not an identifier
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(name="user_table", // this is important! "user" is a keyword in H2 and not an identifier
+       uniqueConstraints = @UniqueConstraint(name = "uk_user_name", columnNames = "name")) // indexed, and the DB rejects duplicates
 @JsonIdentityInfo(
         scope=User.class,
         generator = ObjectIdGenerators.PropertyGenerator.class,
@@ -16,7 +20,7 @@ public class User {
 
     @Id
     @Column(name = "user_id")
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @PooledSequence("user_table_seq")
     private long uid;
 
     private String name;
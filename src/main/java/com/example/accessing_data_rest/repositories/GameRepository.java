@@ -1,15 +1,166 @@
 package com.example.accessing_data_rest.repositories;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
+import com.example.accessing_data_rest.dto.GameSummary;
+import com.example.accessing_data_rest.dto.PlayerCountDrift;
 import com.example.accessing_data_rest.model.Game;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.data.rest.core.annotation.RestResource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 @RepositoryRestResource(collectionResourceRel = "game", path = "game")
 public interface GameRepository extends PagingAndSortingRepository<Game, Long>, CrudRepository<Game,Long> {
     List<Game> findByName(@Param("name") String name);
 
+    // Writes go through the services only: they keep playerCount, the game lock, the seat version
+    // check, the lobby feed, the search index and the cache evictions in step. Data REST still
+    // serves the reads; POST, PUT, PATCH and DELETE on this resource answer 405.
+    @Override
+    @RestResource(exported = false)
+    <S extends Game> S save(S entity);
+
+    @Override
+    @RestResource(exported = false)
+    <S extends Game> Iterable<S> saveAll(Iterable<S> entities);
+
+    @Override
+    @RestResource(exported = false)
+    void deleteById(Long id);
+
+    @Override
+    @RestResource(exported = false)
+    void delete(Game entity);
+
+    @Override
+    @RestResource(exported = false)
+    void deleteAllById(Iterable<? extends Long> ids);
+
+    @Override
+    @RestResource(exported = false)
+    void deleteAll(Iterable<? extends Game> entities);
+
+    @Override
+    @RestResource(exported = false)
+    void deleteAll();
+
+    // The game row by id, usually from the second-level cache. Joins the caller's transaction
+    // if there is one but doesn't start its own, so a cache hit takes no connection at all.
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    Optional<Game> findById(Long id);
+
+    // Fetch plans. Game.players is lazy, so plain findById is just the game row.
+    // "Game with roster": the game, its players and their users in one joined select.
+    @RestResource(exported = false)
+    @EntityGraph(attributePaths = {"players", "players.user"})
+    Optional<Game> findWithPlayersByUid(@Param("uid") long uid);
+
+    // "Game to fill up": the game row, locked until commit, so a bulk join counts free seats once
+    // and other writers wait (their version check then sends them round again)
+    @RestResource(exported = false)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT g FROM Game g WHERE g.uid = :uid")
+    Optional<Game> findForUpdateByUid(@Param("uid") long uid);
+
+    // For MatchmakingService: open games with a free seat whose size lies within [minPlayers, maxPlayers],
+    // fullest first so games fill up and can start. The ids first, unlocked, to know which game locks
+    // to take; then those of them that still fit, locked until commit, like findForUpdateByUid
+    String FREE_SEATS = " WHERE g.status = :status AND g.playerCount < g.maxPlayers"
+            + " AND g.minPlayers >= :minPlayers AND g.maxPlayers <= :maxPlayers";
+    String FULLEST_FIRST = " ORDER BY g.maxPlayers - g.playerCount, g.uid";
+
+    @RestResource(exported = false)
+    @Query("SELECT g.uid FROM Game g" + FREE_SEATS + FULLEST_FIRST)
+    List<Long> findIdsWithFreeSeats(@Param("status") Game.GameStatus status, @Param("minPlayers") int minPlayers,
+                                    @Param("maxPlayers") int maxPlayers, Pageable pageable);
+
+    @RestResource(exported = false)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT g FROM Game g" + FREE_SEATS + " AND g.uid IN :uids" + FULLEST_FIRST)
+    List<Game> findForUpdateWithFreeSeats(@Param("uids") Collection<Long> uids, @Param("status") Game.GameStatus status,
+                                          @Param("minPlayers") int minPlayers, @Param("maxPlayers") int maxPlayers);
+
+    // Lobby listings and search return flat GameSummary rows built by the query itself:
+    // no Game entities, no rosters. Slices instead of Pages, so no count(*) runs per request.
+    String SUMMARY = "SELECT new com.example.accessing_data_rest.dto.GameSummary("
+            + "g.uid, g.name, g.minPlayers, g.maxPlayers, g.owner, g.status, g.playerCount) FROM Game g";
+
+    @RestResource(exported = false)
+    @Query(SUMMARY)
+    Slice<GameSummary> findSummaries(Pageable pageable);
+
+    @RestResource(exported = false)
+    @Query(SUMMARY + " WHERE g.status = :status")
+    Slice<GameSummary> findSummariesByStatus(@Param("status") Game.GameStatus status, Pageable pageable);
+
+    // Keyset ("after this uid") variants: cost stays the same no matter how deep the client scrolls
+    @RestResource(exported = false)
+    @Query(SUMMARY + " WHERE g.uid > :uid")
+    Slice<GameSummary> findSummariesAfter(@Param("uid") long uid, Pageable pageable);
+
+    @RestResource(exported = false)
+    @Query(SUMMARY + " WHERE g.status = :status AND g.uid > :uid")
+    Slice<GameSummary> findSummariesByStatusAfter(@Param("status") Game.GameStatus status, @Param("uid") long uid, Pageable pageable);
+
+    // "Game summary": one flat row, no entity
+    @RestResource(exported = false)
+    @Query(SUMMARY + " WHERE g.uid = :uid")
+    Optional<GameSummary> findSummaryByUid(@Param("uid") long uid);
+
+    // Name search, on idx_game_name: exact, or a prefix as the range [prefix, prefixEnd).
+    // status null means any status.
+    String SEARCH_FILTER = " AND (:status IS NULL OR g.status = :status) AND g.maxPlayers - g.playerCount >= :minFreeSeats";
+
+    @RestResource(exported = false)
+    @Query(SUMMARY + " WHERE g.name = :name" + SEARCH_FILTER)
+    Slice<GameSummary> findSummariesByName(@Param("name") String name, @Param("status") Game.GameStatus status,
+                                           @Param("minFreeSeats") int minFreeSeats, Pageable pageable);
+
+    @RestResource(exported = false)
+    @Query(SUMMARY + " WHERE g.name >= :prefix AND g.name < :prefixEnd" + SEARCH_FILTER)
+    Slice<GameSummary> findSummariesByNamePrefix(@Param("prefix") String prefix, @Param("prefixEnd") String prefixEnd,
+                                                 @Param("status") Game.GameStatus status,
+                                                 @Param("minFreeSeats") int minFreeSeats, Pageable pageable);
+
+    // For GameReaper: games in this status untouched since 'before', on idx_game_status_activity.
+    // Keyset by uid, so a game that couldn't be archived doesn't come back in the next batch.
+    @RestResource(exported = false)
+    @Query("SELECT g.uid FROM Game g WHERE g.status = :status AND g.lastActivity < :before AND g.uid > :after ORDER BY g.uid")
+    List<Long> findIdleGameIds(@Param("status") Game.GameStatus status, @Param("before") Instant before,
+                               @Param("after") long after, Pageable pageable);
+
+    // Game.playerCount is kept up to date by every join/leave; these two let the
+    // reconciliation job check it against the Player table and repair it
+    @RestResource(exported = false)
+    @Query("SELECT new com.example.accessing_data_rest.dto.PlayerCountDrift(g.uid, g.playerCount, COUNT(p)) "
+            + "FROM Game g LEFT JOIN g.players p GROUP BY g.uid, g.playerCount HAVING g.playerCount <> COUNT(p)")
+    List<PlayerCountDrift> findPlayerCountDrift();
+
+    @RestResource(exported = false)
+    @Modifying
+    @Query("UPDATE Game g SET g.playerCount = (SELECT COUNT(p) FROM Player p WHERE p.game = g), "
+            + "g.version = g.version + 1 WHERE g.uid = :uid") // version bump: in-flight writers must re-read
+    int recountPlayers(@Param("uid") long uid);
+
+    // "Game as saved": the row from the DB, past the second-level cache, for announcing a game
+    // that was just written around Hibernate (a recount above, the lobby engine's write-behind)
+    @RestResource(exported = false)
+    @Query("SELECT g FROM Game g WHERE g.uid = :uid")
+    Optional<Game> findSavedByUid(@Param("uid") long uid);
+
 }
@@ -1,16 +1,101 @@
 package com.example.accessing_data_rest.repositories;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
+import com.example.accessing_data_rest.dto.GameSummary;
+import com.example.accessing_data_rest.dto.LobbySeat;
+import com.example.accessing_data_rest.model.Game;
 import com.example.accessing_data_rest.model.Player;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.data.rest.core.annotation.RestResource;
 
 @RepositoryRestResource(collectionResourceRel = "players", path = "players")
 public interface PlayerRepository extends PagingAndSortingRepository<Player, Long>, CrudRepository<Player, Long> {
+    // players are always shown with their game and user, so fetch those in the same select
+    @Override
+    @EntityGraph(attributePaths = {"game", "user"})
+    Iterable<Player> findAll();
+
+    // Not written over Data REST: a player row is a seat, taken and freed through the services
+    // (see GameRepository.save)
+    @Override
+    @RestResource(exported = false)
+    <S extends Player> S save(S entity);
+
+    @Override
+    @RestResource(exported = false)
+    <S extends Player> Iterable<S> saveAll(Iterable<S> entities);
+
+    @Override
+    @RestResource(exported = false)
+    void deleteById(Long id);
+
+    @Override
+    @RestResource(exported = false)
+    void delete(Player entity);
+
+    @Override
+    @RestResource(exported = false)
+    void deleteAllById(Iterable<? extends Long> ids);
+
+    @Override
+    @RestResource(exported = false)
+    void deleteAll(Iterable<? extends Player> entities);
+
+    @Override
+    @RestResource(exported = false)
+    void deleteAll();
+
+    @EntityGraph(attributePaths = {"game", "user"})
     List<Player> findByUserUid(@Param("userId") Long userId); // for PlayerService
+
+    @EntityGraph(attributePaths = {"game", "user"})
     List<Player> findByName(@Param("name") String name);
 
+    // "My games": the games a user sits in, flat, from uk_player_user_game and the game's primary key
+    @RestResource(exported = false)
+    @Query("SELECT new com.example.accessing_data_rest.dto.GameSummary("
+            + "g.uid, g.name, g.minPlayers, g.maxPlayers, g.owner, g.status, g.playerCount)"
+            + " FROM Player p JOIN p.game g WHERE p.user.uid = :userId ORDER BY g.uid")
+    List<GameSummary> findGameSummariesByUserUid(@Param("userId") long userId);
+
+    // Membership probes, no roster load. Written out because the derived versions joined game (and
+    // user) and filtered on their ids, which H2 can't push into the player table: it scanned every
+    // player. p.game.uid and p.user.uid are player's own foreign key columns, so these seek:
+    // by user and game on uk_player_user_game, by game on its foreign key index.
+    @Query("SELECT COUNT(p) > 0 FROM Player p WHERE p.user.uid = :userId AND p.game.uid = :gameId")
+    boolean existsByUserUidAndGameUid(@Param("userId") long userId, @Param("gameId") long gameId);
+
+    @Query("SELECT p FROM Player p JOIN p.user u WHERE p.game.uid = :gameId AND u.name = :username")
+    Optional<Player> findFirstByGameUidAndUserName(@Param("gameId") long gameId, @Param("username") String username);
+
+    @Query("SELECT COUNT(p) > 0 FROM Player p JOIN p.user u WHERE p.game.uid = :gameId AND u.name = :username")
+    boolean existsByGameUidAndUserName(@Param("gameId") long gameId, @Param("username") String username);
+
+    // which of these users already play in the game; older players from /games/{id}/join have no user, only their name
+    @RestResource(exported = false)
+    @Query("SELECT COALESCE(u.name, p.name) FROM Player p LEFT JOIN p.user u WHERE p.game.uid = :gameId"
+            + " AND (u.name IN :names OR (u IS NULL AND p.name IN :names))")
+    List<String> findMemberNames(@Param("gameId") long gameId, @Param("names") Collection<String> names);
+
+    // for MatchmakingService: which of these users already sit in which of these games
+    @RestResource(exported = false)
+    @Query("SELECT new com.example.accessing_data_rest.dto.LobbySeat(p.game.uid, p.uid, COALESCE(u.name, p.name))"
+            + " FROM Player p LEFT JOIN p.user u WHERE p.game.uid IN :gameIds"
+            + " AND (u.name IN :names OR (u IS NULL AND p.name IN :names))")
+    List<LobbySeat> findSeatsOfUsersInGames(@Param("gameIds") Collection<Long> gameIds, @Param("names") Collection<String> names);
+
+    // for LobbyEngine: every seat of every game in one status
+    @RestResource(exported = false)
+    @Query("SELECT new com.example.accessing_data_rest.dto.LobbySeat(p.game.uid, p.uid, COALESCE(u.name, p.name))"
+            + " FROM Player p LEFT JOIN p.user u WHERE p.game.status = :status")
+    List<LobbySeat> findSeatsByGameStatus(@Param("status") Game.GameStatus status);
+
 }
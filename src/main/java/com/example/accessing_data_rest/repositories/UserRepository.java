@@ -1,15 +1,57 @@
 package com.example.accessing_data_rest.repositories;
 
+import java.util.Collection;
 import java.util.List;
 
+import com.example.accessing_data_rest.dto.UserSummary;
 import com.example.accessing_data_rest.model.User;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.data.rest.core.annotation.RestResource;
 
 @RepositoryRestResource(collectionResourceRel = "user", path = "user")
 public interface UserRepository extends PagingAndSortingRepository<User, Long>, CrudRepository<User,Long> {
     List<User> findByName(@Param("name") String name);
 
+    // Users are only written by UserService (sign-up), which keeps UserCache in step. Renaming or
+    // deleting one over Data REST would leave the cache answering for the old name, so PUT, PATCH
+    // and DELETE on this resource answer 405, as for games and players.
+    @Override
+    @RestResource(exported = false)
+    <S extends User> S save(S entity);
+
+    @Override
+    @RestResource(exported = false)
+    <S extends User> Iterable<S> saveAll(Iterable<S> entities);
+
+    @Override
+    @RestResource(exported = false)
+    void deleteById(Long id);
+
+    @Override
+    @RestResource(exported = false)
+    void delete(User entity);
+
+    @Override
+    @RestResource(exported = false)
+    void deleteAllById(Iterable<? extends Long> ids);
+
+    @Override
+    @RestResource(exported = false)
+    void deleteAll(Iterable<? extends User> entities);
+
+    @Override
+    @RestResource(exported = false)
+    void deleteAll();
+
+    @RestResource(exported = false)
+    @Query("SELECT new com.example.accessing_data_rest.dto.UserSummary(u.uid, u.name) FROM User u WHERE u.name = :name")
+    List<UserSummary> findSummariesByName(@Param("name") String name);
+
+    @RestResource(exported = false)
+    List<User> findByNameIn(Collection<String> names); // one query for a whole bulk join
+
 }
@@ -0,0 +1,57 @@
+package com.example.accessing_data_rest.service;
+
+import com.example.accessing_data_rest.model.Game;
+import com.example.accessing_data_rest.model.Player;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+
+// Hibernate keeps its second-level cache (Game, Player, User and Game.players) in step with
+// everything written through it. Rows written past it, with plain JDBC, have to be evicted
+// here by hand, after commit, or readers keep getting the old copy from memory.
+@Component
+public class EntityCacheEvictor {
+
+    private static final String GAME_PLAYERS = Game.class.getName() + ".players";
+
+    private final Cache cache;
+
+    public EntityCacheEvictor(EntityManagerFactory entityManagerFactory) {
+        this.cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+    }
+
+    // the game row (seat count, version) and its roster
+    public void evictGame(long gameId) {
+        cache.evictEntityData(Game.class, gameId);
+        cache.evictCollectionData(GAME_PLAYERS, gameId);
+    }
+
+    public void evictPlayer(long playerId) {
+        cache.evictEntityData(Player.class, playerId);
+    }
+
+    // A game row changed or deleted, and players removed, in SQL inside the current transaction
+    // (deleteGame, JdbcLobbyStore): evicted once it commits (earlier, a reader could put the old
+    // rows back), nothing on rollback.
+    public void evictAfterCommit(long gameId, Collection<Long> playerIds) {
+        Runnable evict = () -> {
+            evictGame(gameId);
+            playerIds.forEach(this::evictPlayer);
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict.run();
+                }
+            });
+        } else {
+            evict.run();
+        }
+    }
+}
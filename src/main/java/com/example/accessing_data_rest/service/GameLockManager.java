@@ -0,0 +1,55 @@
+package com.example.accessing_data_rest.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// One lock per game id: changes to the same game run one after the other,
+// changes to different games never wait on each other (no shared stripes).
+// A lock only lives in the map while someone holds or waits for it, so the
+// map stays as small as the number of games being changed right now.
+@Component
+public class GameLockManager {
+
+    private final ConcurrentHashMap<Long, GameLock> locks = new ConcurrentHashMap<>();
+
+    public <T> T withLock(long gameId, Supplier<T> action) {
+        GameLock lock = locks.compute(gameId, (id, existing) -> { // register as a user before locking,
+            GameLock l = existing != null ? existing : new GameLock(); // so nobody removes it under us
+            l.users++;
+            return l;
+        });
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+            locks.compute(gameId, (id, l) -> --l.users == 0 ? null : l); // last one out removes it
+        }
+    }
+
+    // Holds the locks of several games at once, for a batch that writes them in one transaction
+    // (MatchmakingService). They are taken in id order, and everyone else holds one at a time,
+    // so two batches can't end up waiting for each other.
+    public <T> T withLocks(Collection<Long> gameIds, Supplier<T> action) {
+        return withLocks(new TreeSet<>(gameIds).iterator(), action);
+    }
+
+    private <T> T withLocks(Iterator<Long> ids, Supplier<T> action) {
+        return ids.hasNext() ? withLock(ids.next(), () -> withLocks(ids, action)) : action.get();
+    }
+
+    // for tests and metrics: how many games currently have a lock
+    int activeLocks() {
+        return locks.size();
+    }
+
+    private static final class GameLock extends ReentrantLock {
+        private int users; // only touched inside locks.compute(), which serializes per key
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.accessing_data_rest.service;
+
+import com.example.accessing_data_rest.dto.LobbyEvent;
+import com.example.accessing_data_rest.model.Game;
+import com.example.accessing_data_rest.repositories.GameRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Games never leave the lobby by themselves. This job moves the ones that are done with into
+// archived_game / archived_player (see model.ArchivedGame), so the game and player tables, and
+// every listing over them, only hold games that can still change:
+//   FINISHED games, lobby.reaper.finished-ttl after they ended
+//   SIGNUP games nobody has created, joined or left for lobby.reaper.signup-ttl (owner gone)
+//
+// It works in batches of lobby.reaper.batch-size games, each in its own short transaction, run with
+// the batch's game locks held (GameLockManager.withLocks) until it has committed and evicted, as
+// every other change to a game is: the game rows are locked and checked again (a game that was
+// joined since the scan stays), then copied and deleted with a few set-based statements. So a join
+// either commits (and is announced) before the archiving, and keeps the game, or finds it gone. A batch that fails is retried game by game, and a game
+// that still fails is logged and left for the next run.
+//
+// SQL rather than JPQL bulk statements, which would clear the whole Game and Player caches: the
+// archived games and their players are evicted one by one instead, as LobbyWriteBehind does.
+// Each archived game is announced on the lobby feed as deleted, with no username.
+@Component
+public class GameReaper {
+
+    private static final Logger log = LoggerFactory.getLogger(GameReaper.class);
+
+    private static final RowMapper<Game> GAME_ROW = (rs, row) -> {
+        Game game = new Game();
+        game.setUid(rs.getLong("game_id"));
+        game.setName(rs.getString("name"));
+        game.setOwner(rs.getString("owner"));
+        game.setStatus(Game.GameStatus.valueOf(rs.getString("status")));
+        game.setPlayerCount(rs.getInt("player_count"));
+        game.setMinPlayers(rs.getInt("min_players"));
+        game.setMaxPlayers(rs.getInt("max_players"));
+        return game;
+    };
+
+    @Autowired
+    private GameRepository gameRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private GameLockManager gameLocks;
+
+    @Autowired
+    private EntityCacheEvictor cacheEvictor;
+
+    @Autowired
+    private LobbyFeed lobbyFeed;
+
+    @Autowired(required = false)
+    private LobbyEngine lobbyEngine; // holds the rosters of signup games when enabled
+
+    private final int batchSize;
+    private final Duration signupTtl;
+    private final Duration finishedTtl;
+
+    public GameReaper(@Value("${lobby.reaper.batch-size:100}") int batchSize,
+                      @Value("${lobby.reaper.signup-ttl:24h}") Duration signupTtl,
+                      @Value("${lobby.reaper.finished-ttl:1h}") Duration finishedTtl) {
+        this.batchSize = batchSize;
+        this.signupTtl = signupTtl;
+        this.finishedTtl = finishedTtl;
+    }
+
+    // returns how many games were archived
+    @Scheduled(initialDelayString = "${lobby.reaper.initial-delay:1m}",
+               fixedDelayString = "${lobby.reaper.interval:5m}")
+    public int reap() {
+        Instant now = Instant.now();
+        int archived = reap(Game.GameStatus.FINISHED, now.minus(finishedTtl))
+                + reap(Game.GameStatus.SIGNUP, now.minus(signupTtl));
+        if (archived > 0) {
+            log.info("Archived {} games", archived);
+        }
+        return archived;
+    }
+
+    private int reap(Game.GameStatus status, Instant before) {
+        int archived = 0;
+        long after = 0;
+        while (true) {
+            List<Long> ids = gameRepository.findIdleGameIds(status, before, after, PageRequest.of(0, batchSize));
+            if (ids.isEmpty()) {
+                return archived;
+            }
+            after = ids.get(ids.size() - 1);
+            archived += archiveBatch(ids, status, before);
+            if (ids.size() < batchSize) {
+                return archived;
+            }
+        }
+    }
+
+    private int archiveBatch(List<Long> ids, Game.GameStatus status, Instant before) {
+        List<Long> plain = new ArrayList<>(ids.size());
+        int archived = 0;
+        for (long id : ids) {
+            if (lobbyEngine != null && lobbyEngine.tracks(id)) {
+                archived += archiveEach(List.of(id), status, before); // with its pending seats saved first
+            } else {
+                plain.add(id);
+            }
+        }
+        if (plain.isEmpty()) {
+            return archived;
+        }
+        try {
+            return archived + archive(plain, status, before);
+        } catch (RuntimeException e) {
+            log.warn("Archiving {} games failed, retrying one by one", plain.size(), e);
+            return archived + archiveEach(plain, status, before);
+        }
+    }
+
+    private int archiveEach(List<Long> ids, Game.GameStatus status, Instant before) {
+        int archived = 0;
+        for (long id : ids) {
+            try {
+                archived += lobbyEngine != null
+                        ? lobbyEngine.exclusive(id, () -> archive(List.of(id), status, before))
+                        : archive(List.of(id), status, before);
+            } catch (RuntimeException e) {
+                log.error("Could not archive game {}: {}", id, e.getMessage());
+            }
+        }
+        return archived;
+    }
+
+    private int archive(List<Long> ids, Game.GameStatus status, Instant before) {
+        return gameLocks.withLocks(ids, () -> archiveLocked(ids, status, before));
+    }
+
+    private int archiveLocked(List<Long> ids, Game.GameStatus status, Instant before) {
+        Archived archived = transactionTemplate.execute(tx -> {
+            List<Object> args = new ArrayList<>(ids);
+            args.add(status.name());
+            args.add(Timestamp.from(before));
+            List<Game> games = jdbcTemplate.query("SELECT game_id, name, owner, status, player_count, min_players, max_players"
+                    + " FROM game WHERE game_id IN (" + placeholders(ids.size()) + ") AND status = ? AND last_activity < ?"
+                    + " FOR UPDATE", GAME_ROW, args.toArray());
+            if (games.isEmpty()) {
+                return new Archived(games, List.of());
+            }
+            Object[] gameIds = games.stream().map(Game::getUid).toArray();
+            String in = placeholders(gameIds.length);
+            List<Long> playerIds = jdbcTemplate.queryForList(
+                    "SELECT player_id FROM player WHERE game_game_id IN (" + in + ")", Long.class, gameIds);
+            List<Object> archiveArgs = new ArrayList<>();
+            archiveArgs.add(Timestamp.from(Instant.now()));
+            Collections.addAll(archiveArgs, gameIds);
+            jdbcTemplate.update("INSERT INTO archived_game (game_id, name, min_players, max_players, owner, status,"
+                    + " player_count, last_activity, archived_at) SELECT game_id, name, min_players, max_players, owner,"
+                    + " status, player_count, last_activity, ? FROM game WHERE game_id IN (" + in + ")", archiveArgs.toArray());
+            jdbcTemplate.update("INSERT INTO archived_player (player_id, game_id, name, user_id)"
+                    + " SELECT player_id, game_game_id, name, user_user_id FROM player WHERE game_game_id IN (" + in + ")", gameIds);
+            jdbcTemplate.update("DELETE FROM player WHERE game_game_id IN (" + in + ")", gameIds);
+            jdbcTemplate.update("DELETE FROM game WHERE game_id IN (" + in + ")", gameIds);
+            for (Game game : games) {
+                lobbyFeed.publish(LobbyEvent.Type.GAME_DELETED, game, null); // sent after commit
+            }
+            return new Archived(games, playerIds);
+        });
+        archived.games().forEach(game -> cacheEvictor.evictGame(game.getUid()));
+        archived.playerIds().forEach(cacheEvictor::evictPlayer);
+        return archived.games().size();
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private record Archived(List<Game> games, List<Long> playerIds) {
+    }
+}
@@ -0,0 +1,395 @@
+package com.example.accessing_data_rest.service;
+
+import com.example.accessing_data_rest.dto.GameSummary;
+import com.example.accessing_data_rest.dto.LobbyEvent;
+import com.example.accessing_data_rest.model.Game;
+import com.example.accessing_data_rest.repositories.GameRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// In-memory trigram index of game names, for the searches the DB's name index can't do:
+// substring ("contains") and typo-tolerant ("fuzzy") matches, both ignoring case.
+//
+// Names are lower-cased and cut into trigrams, padded as pg_trgm does, so the start and end
+// of a name count too: "lobby" -> "  l", " lo", "lob", "obb", "bby", "by ". Each trigram has
+// a posting list of the games whose name has it, in the order the games were added (by uid).
+//  - contains walks the shortest list among the query's trigrams, in uid order, and checks the
+//    name of each game that is in all the other lists too, until the page is full.
+//  - fuzzy scores trigram similarity, shared / (query's + name's - shared), and keeps names at
+//    lobby.search.fuzzy-threshold or above, best first. A name that reaches the threshold shares
+//    enough trigrams to be in one of the query's rarest lists, so those (and any list that isn't
+//    huge) are counted; huge lists, like the "  g" of a lobby full of "game...", are only
+//    looked up for the few names still in the running.
+// Both filter on status and free seats as they go.
+//
+// Loaded at startup, from the event log's view if it is on (LobbyEventLog) and from the DB if not,
+// then kept current from the lobby feed (created and deleted games, seat and status changes),
+// so a change shows up here a moment after its commit.
+// Readers share a read lock; the feed's dispatcher thread is the only writer. A deleted game
+// leaves a hole in the posting lists until there are more holes than games, then they are rebuilt.
+@Component
+public class GameSearchIndex implements LobbyListener {
+
+    private static final Logger log = LoggerFactory.getLogger(GameSearchIndex.class);
+
+    public static final int MIN_QUERY_LENGTH = 3; // one trigram
+    public static final int MAX_QUERY_LENGTH = 64; // so fuzzy's per-slot counts fit in a byte
+    private static final int LOAD_CHUNK = 10_000;
+    private static final int MIN_HOLES_TO_COMPACT = 1024;
+
+    @Autowired
+    private GameRepository gameRepository;
+
+    @Autowired
+    private LobbyFeed lobbyFeed;
+
+    @Autowired(required = false)
+    private LobbyEventLog eventLog;
+
+    private final double fuzzyThreshold;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // guarded by lock
+    private final Map<Long, Entry> byUid = new HashMap<>();
+    private final Map<Long, Postings> postings = new HashMap<>(); // trigram -> slots
+    private Entry[] slots = new Entry[1024];                       // null where a game was deleted
+    private int[] gramCounts = new int[1024];                      // slot -> distinct trigrams in its name
+    private int slotCount;
+    private boolean subscribed;
+
+    // zeroed slot-indexed arrays for fuzzy's counting, one per query in flight, kept for reuse
+    private final ConcurrentLinkedQueue<byte[]> counters = new ConcurrentLinkedQueue<>();
+
+    public GameSearchIndex(@Value("${lobby.search.fuzzy-threshold:0.3}") double fuzzyThreshold) {
+        this.fuzzyThreshold = fuzzyThreshold;
+    }
+
+    // (Re)builds the index in uid order, then follows the feed: from the event log's view, and from
+    // the seq it is current as of (events the view already had come again, which changes nothing),
+    // or else from the DB, and from new events on.
+    @PostConstruct
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            clear();
+            Long since = null;
+            if (eventLog != null) {
+                since = eventLog.view().forEachGame(this::put);
+            } else {
+                long after = 0;
+                Slice<GameSummary> chunk;
+                do {
+                    chunk = gameRepository.findSummariesAfter(after, PageRequest.of(0, LOAD_CHUNK, Sort.by("uid")));
+                    for (GameSummary summary : chunk) {
+                        put(summary);
+                        after = summary.uid();
+                    }
+                } while (chunk.hasNext());
+            }
+            if (!subscribed) {
+                lobbyFeed.subscribe(this, since);
+                subscribed = true;
+            }
+            log.info("Game search index loaded {} games", byUid.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onLobbyEvent(LobbyEvent event) {
+        if (event.type() == LobbyEvent.Type.RESYNC) { // more happened while loading than the feed remembers
+            load();
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (event.type() == LobbyEvent.Type.GAME_DELETED) {
+                remove(event.gameId());
+            } else {
+                put(new GameSummary(event.gameId(), event.gameName(), event.minPlayers(), event.maxPlayers(),
+                        event.owner(), event.status(), event.playerCount()));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Slice<GameSummary> contains(String query, Game.GameStatus status, int minFreeSeats, Pageable pageable) {
+        String needle = checkQuery(query);
+        long[] grams = trigrams(needle, false);
+        lock.readLock().lock();
+        try {
+            Postings[] lists = new Postings[grams.length];
+            for (int i = 0; i < grams.length; i++) {
+                lists[i] = postings.get(grams[i]);
+                if (lists[i] == null) {
+                    return new SliceImpl<>(List.of(), pageable, false);
+                }
+            }
+            Arrays.sort(lists, Comparator.comparingInt(list -> list.size));
+            // walk the shortest list; a slot that is in all the others too has every trigram,
+            // and only then is its name read to see whether they are in a row
+            int[] next = new int[lists.length];
+            List<GameSummary> page = new ArrayList<>(pageable.getPageSize() + 1);
+            long skip = pageable.getOffset();
+            for (int i = 0; i < lists[0].size && page.size() <= pageable.getPageSize(); i++) { // one extra: is there more?
+                int slot = lists[0].slots[i];
+                if (!inAll(lists, next, slot)) {
+                    continue;
+                }
+                Entry entry = slots[slot];
+                if (entry != null && entry.key.contains(needle) && matches(entry.summary, status, minFreeSeats)) {
+                    if (skip > 0) {
+                        skip--;
+                    } else {
+                        page.add(entry.summary);
+                    }
+                }
+            }
+            return slice(page, pageable);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Slice<GameSummary> fuzzy(String query, Game.GameStatus status, int minFreeSeats, Pageable pageable) {
+        long[] grams = trigrams(checkQuery(query), true);
+        // similarity <= shared / grams.length, so a match shares at least minShared of the query's trigrams
+        int minShared = Math.max(1, (int) Math.ceil(fuzzyThreshold * grams.length));
+        lock.readLock().lock();
+        try {
+            Postings[] lists = new Postings[grams.length];
+            for (int i = 0; i < grams.length; i++) {
+                lists[i] = postings.getOrDefault(grams[i], Postings.EMPTY);
+            }
+            Arrays.sort(lists, Comparator.comparingInt(list -> list.size));
+
+            // Count, per slot, the lists that hold it: at least the rarest ones a match must be in
+            // (it can miss at most the others), and any other list that isn't huge. Only slots that
+            // would still be close enough if they were in every huge list are looked up in those.
+            // The counts go in a slot-indexed array; lists are in slot order, so it is filled and
+            // then read (and cleared, for the next query) front to back.
+            int required = grams.length - minShared + 1;
+            int counted = 0;
+            while (counted < lists.length && (counted < required || lists[counted].size <= slotCount / 8)) {
+                counted++;
+            }
+            byte[] counts = borrowCounter();
+            for (int i = 0; i < counted; i++) {
+                for (int j = 0; j < lists[i].size; j++) {
+                    counts[lists[i].slots[j]]++;
+                }
+            }
+            List<Scored> scored = new ArrayList<>();
+            for (int i = 0; i < counted; i++) {
+                for (int j = 0; j < lists[i].size; j++) {
+                    int slot = lists[i].slots[j];
+                    int shared = counts[slot];
+                    if (shared == 0) { // seen in an earlier list
+                        continue;
+                    }
+                    counts[slot] = 0;
+                    int atMost = shared + lists.length - counted;
+                    if (atMost < minShared || similarity(atMost, grams.length, gramCounts[slot]) < fuzzyThreshold) {
+                        continue;
+                    }
+                    for (int k = counted; k < lists.length; k++) {
+                        int at = lists[k].seek(0, slot);
+                        if (at < lists[k].size && lists[k].slots[at] == slot) {
+                            shared++;
+                        }
+                    }
+                    double similarity = similarity(shared, grams.length, gramCounts[slot]);
+                    Entry entry = similarity >= fuzzyThreshold ? slots[slot] : null; // the game is only read for a match
+                    if (entry != null && matches(entry.summary, status, minFreeSeats)) {
+                        scored.add(new Scored(entry.summary, similarity));
+                    }
+                }
+            }
+            counters.offer(counts); // all zero again
+            scored.sort(Comparator.comparingDouble(Scored::similarity).reversed()
+                    .thenComparingLong(s -> s.summary().uid()));
+            List<GameSummary> page = scored.stream()
+                    .skip(pageable.getOffset())
+                    .limit(pageable.getPageSize() + 1L)
+                    .map(Scored::summary)
+                    .toList();
+            return slice(page, pageable);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return byUid.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static String checkQuery(String query) {
+        String key = normalize(query);
+        if (key.length() < MIN_QUERY_LENGTH) {
+            throw new IllegalStateException("Search needs at least " + MIN_QUERY_LENGTH + " characters");
+        }
+        if (key.length() > MAX_QUERY_LENGTH) {
+            throw new IllegalStateException("Search takes at most " + MAX_QUERY_LENGTH + " characters");
+        }
+        return key;
+    }
+
+    private byte[] borrowCounter() { // under the read lock, so slotCount holds still
+        byte[] counts = counters.poll();
+        while (counts != null && counts.length < slotCount) { // made before the index grew
+            counts = counters.poll();
+        }
+        return counts != null ? counts : new byte[Math.max(slotCount, slots.length)];
+    }
+
+    private static double similarity(int shared, int queryTrigrams, int nameTrigrams) {
+        shared = Math.min(shared, Math.min(queryTrigrams, nameTrigrams));
+        return (double) shared / (queryTrigrams + nameTrigrams - shared);
+    }
+
+    // whether slot is in lists[1..]; slots come in increasing order, so the cursors in next only move forward
+    private static boolean inAll(Postings[] lists, int[] next, int slot) {
+        for (int i = 1; i < lists.length; i++) {
+            next[i] = lists[i].seek(next[i], slot);
+            if (next[i] == lists[i].size || lists[i].slots[next[i]] != slot) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(GameSummary game, Game.GameStatus status, int minFreeSeats) {
+        return (status == null || game.status() == status) && game.maxPlayers() - game.playerCount() >= minFreeSeats;
+    }
+
+    private static Slice<GameSummary> slice(List<GameSummary> pagePlusOne, Pageable pageable) {
+        boolean hasNext = pagePlusOne.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? pagePlusOne.subList(0, pageable.getPageSize()) : pagePlusOne, pageable, hasNext);
+    }
+
+    private void put(GameSummary summary) {
+        Entry entry = byUid.get(summary.uid());
+        if (entry != null) { // names don't change: just the seats and status
+            entry.summary = summary;
+            return;
+        }
+        String key = normalize(summary.name());
+        long[] grams = trigrams(key, true);
+        int slot = slotCount++;
+        if (slot == slots.length) {
+            slots = Arrays.copyOf(slots, slots.length * 2);
+            gramCounts = Arrays.copyOf(gramCounts, slots.length);
+        }
+        entry = new Entry(summary, key, slot);
+        slots[slot] = entry;
+        gramCounts[slot] = grams.length;
+        byUid.put(summary.uid(), entry);
+        for (long gram : grams) {
+            postings.computeIfAbsent(gram, g -> new Postings()).add(slot);
+        }
+    }
+
+    private void remove(long uid) {
+        Entry entry = byUid.remove(uid);
+        if (entry == null) {
+            return;
+        }
+        slots[entry.slot] = null;
+        int holes = slotCount - byUid.size();
+        if (holes > Math.max(MIN_HOLES_TO_COMPACT, byUid.size())) {
+            Entry[] live = Arrays.stream(slots, 0, slotCount).filter(Objects::nonNull).toArray(Entry[]::new);
+            clear();
+            for (Entry game : live) {
+                put(game.summary);
+            }
+        }
+    }
+
+    private void clear() {
+        byUid.clear();
+        postings.clear();
+        slots = new Entry[1024];
+        gramCounts = new int[1024];
+        slotCount = 0;
+    }
+
+    private static String normalize(String name) {
+        return name == null ? "" : name.toLowerCase(Locale.ROOT);
+    }
+
+    // distinct and sorted, each packed into a long; padded as described at the top
+    static long[] trigrams(String key, boolean padded) {
+        String s = padded ? "  " + key + " " : key;
+        if (s.length() < 3) {
+            return new long[0];
+        }
+        long[] grams = new long[s.length() - 2];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+        }
+        return Arrays.stream(grams).sorted().distinct().toArray();
+    }
+
+    private static final class Entry {
+        GameSummary summary;
+        final String key;      // lower-cased name
+        final int slot;
+
+        Entry(GameSummary summary, String key, int slot) {
+            this.summary = summary;
+            this.key = key;
+            this.slot = slot;
+        }
+    }
+
+    // slots in increasing order, as they are only ever appended
+    private static final class Postings {
+        static final Postings EMPTY = new Postings();
+
+        int[] slots = new int[4];
+        int size;
+
+        void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+
+        // the first index at or after 'from' whose slot is >= slot (size if none)
+        int seek(int from, int slot) {
+            int found = Arrays.binarySearch(slots, from, size, slot);
+            return found >= 0 ? found : -found - 1;
+        }
+    }
+
+    private record Scored(GameSummary summary, double similarity) {
+    }
+}
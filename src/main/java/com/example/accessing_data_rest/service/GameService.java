@@ -1,5 +1,7 @@
 package com.example.accessing_data_rest.service;
 
+import com.example.accessing_data_rest.dto.GameSummary;
+import com.example.accessing_data_rest.dto.LobbyEvent;
 import com.example.accessing_data_rest.model.Game;
 import com.example.accessing_data_rest.model.Player;
 import com.example.accessing_data_rest.model.User;
@@ -7,11 +9,18 @@ import com.example.accessing_data_rest.repositories.GameRepository;
 import com.example.accessing_data_rest.repositories.PlayerRepository;
 import com.example.accessing_data_rest.repositories.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 import java.util.ArrayList;
+import java.util.function.Supplier;
 
 @Service
 public class GameService {
@@ -25,66 +34,129 @@ public class GameService {
     @Autowired
     private UserRepository userRepository;
 
-    public List<Game> getGames() {
-        List<Game> games = (List<Game>) gameRepository.findAll();
-        for (Game game : games) {
-            if (game.getPlayers() == null) {
-                game.setPlayers(new ArrayList<>());
-            }
-        }
-        return games;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityCacheEvictor cacheEvictor;
+
+    @Autowired
+    private GameLockManager gameLocks;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private LobbyFeed lobbyFeed;
+
+    @Autowired(required = false)
+    private LobbyEngine lobbyEngine; // only with lobby.engine.enabled=true; then it owns the rosters of games in signup
+
+    @Autowired
+    private GameSearchIndex searchIndex;
+
+    @Autowired
+    private LobbyStore lobbyStore; // joining, leaving and the probes; JPA or plain SQL, see lobby.store
+
+    public enum SearchMatch {
+        EXACT,
+        PREFIX,
+        CONTAINS,
+        FUZZY
     }
 
-    public List<Game> getOpenGames() {
-        List<Game> games = (List<Game>) gameRepository.findAll();
-        return games.stream()
-            .filter(g -> g.getStatus() == Game.GameStatus.SIGNUP)
-            .peek(g -> {
-                if (g.getPlayers() == null) {
-                    g.setPlayers(new ArrayList<>());
-                }
-            })
-            .collect(Collectors.toList());
+    private static final int MAX_WRITE_ATTEMPTS = 5; // optimistic retries before a change to a game gives up
+
+    // Lobby listings: flat summaries straight from the query, see GameRepository.SUMMARY
+    public Slice<GameSummary> getGames(Pageable pageable) {
+        return gameRepository.findSummaries(pageable);
+    }
+
+    public Slice<GameSummary> getGamesAfter(long afterUid, int size) {
+        return gameRepository.findSummariesAfter(afterUid, keysetPage(size));
     }
 
-    public List<Game> searchGames(String name) {
-        List<Game> games = gameRepository.findByName(name);
-        for (Game g : games) {
-            g.setPlayers(null);  // Strip players to avoid nested deserialization
+    public Slice<GameSummary> getOpenGames(Pageable pageable) {
+        return gameRepository.findSummariesByStatus(Game.GameStatus.SIGNUP, pageable);
+    }
+
+    public Slice<GameSummary> getOpenGamesAfter(long afterUid, int size) {
+        return gameRepository.findSummariesByStatusAfter(Game.GameStatus.SIGNUP, afterUid, keysetPage(size));
+    }
+
+    private Pageable keysetPage(int size) { // keyset pages are always the first page, ordered by uid
+        return PageRequest.of(0, size, Sort.by("uid"));
+    }
+
+    // Search by name, filtered by status (null: any) and free seats. Exact and prefix use the
+    // DB's name index: case-sensitive, ordered by name. Contains and fuzzy go to GameSearchIndex:
+    // case-insensitive, in uid order and best match first respectively.
+    public Slice<GameSummary> searchGames(String name, SearchMatch match, Game.GameStatus status,
+                                          int minFreeSeats, Pageable pageable) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalStateException("Search name cannot be empty");
         }
-        return games;
+        Pageable byName = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by("name", "uid"));
+        return switch (match) {
+            case EXACT -> gameRepository.findSummariesByName(name, status, minFreeSeats, byName);
+            case PREFIX -> gameRepository.findSummariesByNamePrefix(name, prefixEnd(name), status, minFreeSeats, byName);
+            case CONTAINS -> searchIndex.contains(name, status, minFreeSeats, pageable);
+            case FUZZY -> searchIndex.fuzzy(name, status, minFreeSeats, pageable);
+        };
     }
 
+    // the first string after all those starting with prefix: "abc" -> "abd"
+    private static String prefixEnd(String prefix) {
+        int last = prefix.length() - 1;
+        while (last >= 0 && prefix.charAt(last) == Character.MAX_VALUE) {
+            last--;
+        }
+        if (last < 0) {
+            throw new IllegalStateException("Cannot search by this prefix");
+        }
+        return prefix.substring(0, last) + (char) (prefix.charAt(last) + 1);
+    }
+
+    // The owner is looked up first, and the game and the owner's seat are saved in one transaction,
+    // so a game never claims a seat that has no Player row.
     public Game createGame(String name, int minPlayers, int maxPlayers, String owner) {
         List<Game> existing = gameRepository.findByName(name);
         if (!existing.isEmpty()) {
             throw new RuntimeException("Game already exists");
         }
+        User ownerUser = userCache.get(owner, lobbyStore::findUser)
+                .orElseThrow(() -> new IllegalStateException("No user found with this name"));
+
         Game game = new Game();
         game.setName(name);              // set info
         game.setMinPlayers(minPlayers);
         game.setMaxPlayers(maxPlayers);
         game.setOwner(owner);
         game.setStatus(Game.GameStatus.SIGNUP);
+        game.setPlayerCount(1);          // the owner's seat, see below
 
-        Game savedGame = gameRepository.save(game); // save game
-
-        // Auto-join owner as a player
-        List<User> user = userRepository.findByName(owner);
-        User ownerUser = user.get(0);
-
-        Player player = new Player();
+        Player player = new Player();    // auto-join owner as a player
         player.setName(owner);
         player.setUser(ownerUser);      // associate user
-        player.setGame(savedGame);          // associate game
-
-        playerRepository.save(player);
 
+        Game savedGame = transactionTemplate.execute(status -> {
+            Game saved = gameRepository.save(game); // save game
+            player.setGame(saved);          // associate game
+            playerRepository.save(player);
+            lobbyFeed.publish(LobbyEvent.Type.GAME_CREATED, saved, owner); // sent once we commit
+            return saved;
+        });
+        if (lobbyEngine != null) {
+            lobbyEngine.track(savedGame, List.of(player));
+        }
         return savedGame;
 
     }
 
-    public Game getGameById(Long id) {
+    public Game getGameById(Long id) { // the game row only, players stay lazy
         Game game = gameRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Game not found"));
         if (game.getPlayers() == null) {
@@ -93,18 +165,42 @@ public class GameService {
         return game;
     }
 
+    // Every change to a game or its roster bumps Game.version, so it makes an ETag for the
+    // game as shown. Read by id, so usually from the second-level cache.
+    public long getGameVersion(Long id) {
+        return getGameById(id).getVersion();
+    }
+
+    public Game getGameWithPlayers(Long id) { // game + roster + users in one query, for showing a game
+        return lobbyStore.findGameWithPlayers(id)
+                .orElseThrow(() -> new RuntimeException("Game not found"));
+    }
+
+    // For quick probes (canJoin, isHost): the game row by id, which with the JPA store the
+    // second-level cache answers from memory once the game has been read.
+    private GameSummary getGameSummary(Long id) {
+        return lobbyStore.findGame(id).map(GameSummary::of)
+                .orElseThrow(() -> new RuntimeException("Game not found"));
+    }
+
     public boolean canJoinGame(Long gameId, String username) {
-        Game game = getGameById(gameId);
+        if (lobbyEngine != null) {
+            Optional<Boolean> answer = lobbyEngine.canJoin(gameId, username);
+            if (answer.isPresent()) {
+                return answer.get();
+            }
+        }
+        GameSummary game = getGameSummary(gameId);
         
-        if (game.getStatus() != Game.GameStatus.SIGNUP) { // signup phase
+        if (game.status() != Game.GameStatus.SIGNUP) { // signup phase
             return false;
         }
 
-        if (game.getOwner().equals(username)) { // creator cannot join; they should use other methods
+        if (game.owner().equals(username)) { // creator cannot join; they should use other methods
             return false;
         }
 
-        if (game.getPlayers() != null && game.getPlayers().size() >= game.getMaxPlayers()) { // not full
+        if (game.playerCount() >= game.maxPlayers()) { // not full
             return false;
         }
 
@@ -112,43 +208,47 @@ public class GameService {
     }
 
     public boolean isHost(Long gameId, String username) {
-        Game game = getGameById(gameId);
-        return game.getOwner().equals(username);
+        if (lobbyEngine != null) {
+            Optional<Boolean> answer = lobbyEngine.isHost(gameId, username);
+            if (answer.isPresent()) {
+                return answer.get();
+            }
+        }
+        GameSummary game = getGameSummary(gameId);
+        return game.owner().equals(username);
     }
 
     public void leaveGame(Long gameId, String username) {
-        Game game = getGameById(gameId);
-        if (game.getStatus() != Game.GameStatus.SIGNUP) { // signup phase
-            throw new IllegalStateException("Cannot leave game - game is not in signup phase");
-        }
-        
-        if (game.getPlayers() == null || game.getPlayers().isEmpty()) { // player must be in game
-            throw new IllegalStateException("You are not a player in this game");
-        }
-        
-        boolean playerFound = false;
-        Player playerToRemove = null;
-        
-        for (Player player : game.getPlayers()) {
-            if (player.getUser() != null && player.getUser().getName().equals(username)) {
-                playerFound = true;
-                playerToRemove = player;
-                break;
+        if (lobbyEngine != null) {
+            LobbyEngine.Seat seat = lobbyEngine.leave(gameId, username);
+            if (seat == LobbyEngine.Seat.NOT_A_PLAYER) {
+                throw new IllegalStateException("You are not a player in this game");
+            }
+            if (seat == LobbyEngine.Seat.LEFT) {
+                return;
             }
         }
+        mutateGame(gameId, () -> leaveGameOnce(gameId, username));
+    }
 
-        if (!playerFound) {
-            throw new IllegalStateException("You are not a player in this game");
+    private Game leaveGameOnce(Long gameId, String username) {
+        Game game = findGame(gameId);
+        if (game.getStatus() != Game.GameStatus.SIGNUP) { // signup phase
+            throw new IllegalStateException("Cannot leave game - game is not in signup phase");
         }
         
-        game.getPlayers().remove(playerToRemove); // delete from game
-        if (playerToRemove != null) {
-            playerRepository.delete(playerToRemove); // delete from DB
+        if (!lobbyStore.removePlayer(game, username)) { // player must be in game; frees the seat
+            throw new IllegalStateException("You are not a player in this game");
         }
-        gameRepository.save(game);
+        lobbyFeed.publish(LobbyEvent.Type.PLAYER_LEFT, game, username); // sent at commit, see mutateGame
+        return game;
     }
 
     public void deleteGame(Long gameId, String username) {
+        inEngine(gameId, () -> mutateGame(gameId, () -> deleteGameOnce(gameId, username)));
+    }
+
+    private Game deleteGameOnce(Long gameId, String username) {
         Game game = getGameById(gameId);
         if (!game.getOwner().equals(username)) { // only owner can delete
             throw new IllegalStateException("Only the game owner can delete the game");
@@ -157,16 +257,24 @@ public class GameService {
             throw new IllegalStateException("Cannot delete game - game is not in signup phase");
         }
 
-        if (game.getPlayers() != null) { // deletes players
-            for (Player player : game.getPlayers()) {
-                playerRepository.delete(player);
-            }
+        // Two statements however full the lobby is, in this transaction. In SQL rather than as a
+        // JPQL bulk delete, which would clear the whole Player cache; only these rows are evicted.
+        // OLD TABLE (H2) hands back the ids of the players the delete removed.
+        List<Long> playerIds = jdbcTemplate.queryForList(
+                "SELECT player_id FROM OLD TABLE (DELETE FROM player WHERE game_game_id = ?)", Long.class, gameId);
+        if (jdbcTemplate.update("DELETE FROM game WHERE game_id = ? AND version = ?", gameId, game.getVersion()) == 0) {
+            throw new OptimisticLockingFailureException("Game " + gameId + " changed while being deleted"); // retried
         }
-
-        gameRepository.delete(game);
+        cacheEvictor.evictAfterCommit(gameId, playerIds);
+        lobbyFeed.publish(LobbyEvent.Type.GAME_DELETED, game, username);
+        return game;
     }
 
     public void startGame(Long gameId, String username) {
+        inEngine(gameId, () -> mutateGame(gameId, () -> startGameOnce(gameId, username)));
+    }
+
+    private Game startGameOnce(Long gameId, String username) {
         Game game = getGameById(gameId);
         if (!game.getOwner().equals(username)) { // only owner can start
             throw new IllegalStateException("Only the game owner can start the game");
@@ -174,55 +282,106 @@ public class GameService {
         if (game.getStatus() != Game.GameStatus.SIGNUP) { // signup phase
             throw new IllegalStateException("Game is not in signup phase");
         }
-        if (game.getPlayers() == null || game.getPlayers().size() < game.getMinPlayers()) { // must have enough players
+        if (game.getPlayerCount() < game.getMinPlayers()) { // must have enough players
             throw new IllegalStateException("Not enough players to start the game");
         }
         
         game.setStatus(Game.GameStatus.ACTIVE);
         gameRepository.save(game);
+        lobbyFeed.publish(LobbyEvent.Type.STATUS_CHANGED, game, username);
+        return game;
     }
 
-    public Game joinGame(Long gameId, String username) {
+    // The game is over; GameReaper archives it after lobby.reaper.finished-ttl
+    public void finishGame(Long gameId, String username) {
+        mutateGame(gameId, () -> finishGameOnce(gameId, username));
+    }
+
+    private Game finishGameOnce(Long gameId, String username) {
         Game game = getGameById(gameId);
+        if (!game.getOwner().equals(username)) { // only owner can finish
+            throw new IllegalStateException("Only the game owner can finish the game");
+        }
+        if (game.getStatus() != Game.GameStatus.ACTIVE) { // must have been started
+            throw new IllegalStateException("Game is not active");
+        }
+
+        game.setStatus(Game.GameStatus.FINISHED);
+        gameRepository.save(game);
+        lobbyFeed.publish(LobbyEvent.Type.STATUS_CHANGED, game, username);
+        return game;
+    }
+
+    public Game joinGame(Long gameId, String username) {
+        if (lobbyEngine != null) {
+            LobbyEngine.Seat seat = lobbyEngine.join(gameId, username); // announced by the engine
+            if (seat == LobbyEngine.Seat.FULL) {
+                throw new IllegalStateException("Cannot join game - game is full");
+            }
+            if (seat != LobbyEngine.Seat.NOT_HERE) {
+                return lobbyEngine.snapshot(gameId).orElseGet(() -> getGameWithPlayers(gameId));
+            }
+        }
+        mutateGame(gameId, () -> joinGameOnce(gameId, username));
+        return getGameWithPlayers(gameId); // answer with the roster as committed
+    }
+
+    private Game joinGameOnce(Long gameId, String username) {
+        Game game = findGame(gameId);
         
         if (game.getStatus() != Game.GameStatus.SIGNUP) { // signup phase
             throw new IllegalStateException("Cannot join game - game is not in signup phase");
         }
         
-        boolean alreadyPlayer = false;                    // check if user is already a player
-        if (game.getPlayers() != null) {
-            for (Player player : game.getPlayers()) {
-                if (player.getUser() != null && player.getUser().getName().equals(username)) {
-                    alreadyPlayer = true;
-                    break;
-                }
-            }
-        }
-        
-        if (alreadyPlayer) {
-            return game;
+        if (lobbyStore.isPlayer(gameId, username)) {        // check if user is already a player
+            return null;                                    // nothing changed, nothing to announce
         }
         
         boolean isHost = game.getOwner().equals(username);
         if (!isHost) {                                      // just checks if game is full
-            if (game.getPlayers() != null && game.getPlayers().size() >= game.getMaxPlayers()) {
+            if (game.getPlayerCount() >= game.getMaxPlayers()) {
                 throw new IllegalStateException("Cannot join game - game is full");
             }
         }
         
-        Player newPlayer = new Player();
-        newPlayer.setName(username);                        // conveniently sets player name to username
-        
-        if (game.getPlayers() == null) {
-            game.setPlayers(new ArrayList<>());
-        }
-        game.getPlayers().add(newPlayer);
-        
-        newPlayer.setGame(game);
-        playerRepository.save(newPlayer);
-        
-        Game savedGame = gameRepository.save(game);
-        
-        return savedGame;
+        User user = userCache.get(username, lobbyStore::findUser)
+                .orElse(null);                              // so the join shows up in the user's games
+        lobbyStore.addPlayer(game, username, user);         // player named after the user; takes the seat,
+                                                            // which the version check guards
+        lobbyFeed.publish(LobbyEvent.Type.PLAYER_JOINED, game, username);
+        return game;
+    }
+
+    // the game row for a change through the store, read in the change's transaction
+    private Game findGame(Long gameId) {
+        return lobbyStore.findGame(gameId)
+                .orElseThrow(() -> new RuntimeException("Game not found"));
+    }
+
+    // Start and delete read the game from the DB, so with the engine on, its roster is saved first
+    // and the engine then drops the game if it left signup (see LobbyEngine.exclusive).
+    private <T> T inEngine(long gameId, Supplier<T> action) {
+        return lobbyEngine != null ? lobbyEngine.exclusive(gameId, action) : action.get();
+    }
+
+    // Every state change of a game goes through here. The per-game lock lines up concurrent
+    // requests for the same game (and is held until after commit, so the next one sees our
+    // write); requests for other games don't wait. The version check on Game still catches
+    // writers that don't take the lock, like LobbyWriteBehind's batches, and we then re-read and retry.
+    // Changes are announced from inside the action: LobbyFeed sends the event at commit, while the
+    // lock is still held, so the feed (and the search index and event log behind it) gets the
+    // changes to one game in the order they committed. A rolled back attempt announces nothing.
+    private <T> T mutateGame(long gameId, Supplier<T> action) {
+        return gameLocks.withLock(gameId, () -> {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    return transactionTemplate.execute(status -> action.get());
+                } catch (OptimisticLockingFailureException e) {
+                    if (attempt >= MAX_WRITE_ATTEMPTS) {
+                        throw new IllegalStateException("The game is busy right now, please try again");
+                    }
+                }
+            }
+        });
     }
-} 
\ No newline at end of file
+}
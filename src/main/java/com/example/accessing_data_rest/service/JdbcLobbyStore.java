@@ -0,0 +1,156 @@
+package com.example.accessing_data_rest.service;
+
+import com.example.accessing_data_rest.model.Game;
+import com.example.accessing_data_rest.model.Player;
+import com.example.accessing_data_rest.model.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+// LobbyStore in plain SQL: no entities to hydrate, no persistence context, no dirty checking
+// at commit. A join is two statements (the version-checked seat update, the insert), a leave two
+// (the delete, the seat update), a membership check one, on the (user, game) unique index.
+//
+// Everything read is built by hand as detached objects, and nothing comes from the second-level
+// cache: findGame is a query every time, where JpaLobbyStore answers repeated reads from memory.
+// Since the writes go past Hibernate, the games (and players) they touch are evicted from that
+// cache at commit, and new players get their ids from PlayerIdAllocator.
+@Component
+@ConditionalOnProperty(name = "lobby.store", havingValue = "jdbc")
+public class JdbcLobbyStore implements LobbyStore {
+
+    private static final String GAME_COLUMNS = "g.game_id, g.name, g.min_players, g.max_players, g.owner,"
+            + " g.status, g.player_count, g.version, g.last_activity";
+
+    private static final RowMapper<Game> GAME = (rs, row) -> game(rs);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityCacheEvictor cacheEvictor;
+
+    @Autowired
+    private PlayerIdAllocator playerIds;
+
+    @Override
+    public Optional<Game> findGame(long gameId) {
+        return jdbcTemplate.query("SELECT " + GAME_COLUMNS + " FROM game g WHERE g.game_id = ?", GAME, gameId)
+                .stream().findFirst();
+    }
+
+    // one row per player (or one for a game without any), in the order they joined
+    @Override
+    public Optional<Game> findGameWithPlayers(long gameId) {
+        return Optional.ofNullable(jdbcTemplate.query("SELECT " + GAME_COLUMNS + ", p.player_id, p.name AS player_name,"
+                + " u.user_id, u.name AS user_name FROM game g"
+                + " LEFT JOIN player p ON p.game_game_id = g.game_id"
+                + " LEFT JOIN user_table u ON u.user_id = p.user_user_id"
+                + " WHERE g.game_id = ? ORDER BY p.player_id", rs -> {
+            Game game = null;
+            while (rs.next()) {
+                if (game == null) {
+                    game = game(rs);
+                    game.setPlayers(new ArrayList<>());
+                }
+                long playerId = rs.getLong("player_id");
+                if (rs.wasNull()) {
+                    continue;
+                }
+                Player player = new Player();
+                player.setUid(playerId);
+                player.setName(rs.getString("player_name"));
+                player.setGame(game);
+                long userId = rs.getLong("user_id");
+                if (!rs.wasNull()) {
+                    player.setUser(user(userId, rs.getString("user_name")));
+                }
+                game.getPlayers().add(player);
+            }
+            return game;
+        }, gameId));
+    }
+
+    @Override
+    public Optional<User> findUser(String name) {
+        return jdbcTemplate.query("SELECT user_id, name FROM user_table WHERE name = ?",
+                (rs, row) -> user(rs.getLong("user_id"), rs.getString("name")), name).stream().findFirst();
+    }
+
+    @Override
+    public boolean isPlayer(long gameId, String username) {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM player"
+                + " WHERE user_user_id = (SELECT user_id FROM user_table WHERE name = ?) AND game_game_id = ?",
+                Long.class, username, gameId);
+        return count != null && count > 0;
+    }
+
+    // The seat first: it locks the game row, so of two joins for the last seat the second waits
+    // here and then finds the version moved on.
+    @Override
+    public void addPlayer(Game game, String username, User user) {
+        takeSeats(game, 1);
+        jdbcTemplate.update("INSERT INTO player (player_id, name, game_game_id, user_user_id) VALUES (?, ?, ?, ?)",
+                playerIds.next(), username, game.getUid(), user == null ? null : user.getUid());
+        cacheEvictor.evictAfterCommit(game.getUid(), List.of());
+    }
+
+    // By user and game, which the unique index says is one row at most. OLD TABLE (H2) hands
+    // back the id of the player the delete removed, for the cache.
+    @Override
+    public boolean removePlayer(Game game, String username) {
+        List<Long> removed = jdbcTemplate.queryForList("SELECT player_id FROM OLD TABLE (DELETE FROM player"
+                + " WHERE user_user_id = (SELECT user_id FROM user_table WHERE name = ?) AND game_game_id = ?)",
+                Long.class, username, game.getUid());
+        if (removed.isEmpty()) {
+            return false;
+        }
+        takeSeats(game, -1);
+        cacheEvictor.evictAfterCommit(game.getUid(), removed);
+        return true;
+    }
+
+    // playerCount and version as Hibernate would write them, guarded by the version the game was
+    // read with; the game object follows along
+    private void takeSeats(Game game, int seats) {
+        int playerCount = Math.max(0, game.getPlayerCount() + seats);
+        if (jdbcTemplate.update("UPDATE game SET player_count = ?, version = version + 1, last_activity = CURRENT_TIMESTAMP"
+                + " WHERE game_id = ? AND version = ?", playerCount, game.getUid(), game.getVersion()) == 0) {
+            throw new OptimisticLockingFailureException("Game " + game.getUid() + " changed while being written"); // retried
+        }
+        game.setPlayerCount(playerCount);
+        game.setVersion(game.getVersion() + 1);
+    }
+
+    private static Game game(ResultSet rs) throws SQLException {
+        Game game = new Game();
+        game.setUid(rs.getLong("game_id"));
+        game.setName(rs.getString("name"));
+        game.setMinPlayers(rs.getInt("min_players"));
+        game.setMaxPlayers(rs.getInt("max_players"));
+        game.setOwner(rs.getString("owner"));
+        String status = rs.getString("status");
+        game.setStatus(status == null ? null : Game.GameStatus.valueOf(status));
+        game.setPlayerCount(rs.getInt("player_count"));
+        game.setVersion(rs.getLong("version"));
+        game.setLastActivity(rs.getObject("last_activity", Instant.class));
+        return game;
+    }
+
+    private static User user(long uid, String name) {
+        User user = new User();
+        user.setUid(uid);
+        user.setName(name);
+        return user;
+    }
+}
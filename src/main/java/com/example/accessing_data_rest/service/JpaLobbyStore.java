@@ -0,0 +1,73 @@
+package com.example.accessing_data_rest.service;
+
+import com.example.accessing_data_rest.model.Game;
+import com.example.accessing_data_rest.model.Player;
+import com.example.accessing_data_rest.model.User;
+import com.example.accessing_data_rest.repositories.GameRepository;
+import com.example.accessing_data_rest.repositories.PlayerRepository;
+import com.example.accessing_data_rest.repositories.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+// LobbyStore through the repositories. Games by id come from the second-level cache once read;
+// writes are flushed at commit, where Game's @Version does the optimistic check.
+@Component
+@ConditionalOnProperty(name = "lobby.store", havingValue = "jpa", matchIfMissing = true)
+public class JpaLobbyStore implements LobbyStore {
+
+    @Autowired
+    private GameRepository gameRepository;
+
+    @Autowired
+    private PlayerRepository playerRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Override
+    public Optional<Game> findGame(long gameId) {
+        return gameRepository.findById(gameId);
+    }
+
+    @Override
+    public Optional<Game> findGameWithPlayers(long gameId) {
+        return gameRepository.findWithPlayersByUid(gameId);
+    }
+
+    @Override
+    public Optional<User> findUser(String name) {
+        return userRepository.findByName(name).stream().findFirst();
+    }
+
+    @Override
+    public boolean isPlayer(long gameId, String username) {
+        return playerRepository.existsByGameUidAndUserName(gameId, username);
+    }
+
+    @Override
+    public void addPlayer(Game game, String username, User user) {
+        Player player = new Player();
+        player.setName(username);
+        player.setUser(user);
+        player.setGame(game);
+        game.setPlayerCount(game.getPlayerCount() + 1);
+
+        playerRepository.save(player);
+        gameRepository.save(game);
+    }
+
+    @Override
+    public boolean removePlayer(Game game, String username) {
+        Optional<Player> player = playerRepository.findFirstByGameUidAndUserName(game.getUid(), username);
+        if (player.isEmpty()) {
+            return false;
+        }
+        playerRepository.delete(player.get());
+        game.setPlayerCount(Math.max(0, game.getPlayerCount() - 1));
+        gameRepository.save(game);
+        return true;
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.accessing_data_rest.service;
+
+import com.example.accessing_data_rest.dto.GameSummary;
+import com.example.accessing_data_rest.dto.LobbyEvent;
+import com.example.accessing_data_rest.dto.LobbySeat;
+import com.example.accessing_data_rest.model.Game;
+import com.example.accessing_data_rest.model.Player;
+import com.example.accessing_data_rest.repositories.GameRepository;
+import com.example.accessing_data_rest.repositories.PlayerRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Optional "lobby engine" mode (lobby.engine.enabled=true). Games in signup live here, in
+// memory, and this is the source of truth for their rosters: join, leave, canJoin and
+// isHost are answered without touching the DB. Each change is handed to LobbyWriteBehind,
+// which saves it shortly after, in order. On startup the signup games are loaded from the DB.
+//
+// Each game is guarded by its own lock; games only share the short hand-off to the write-behind queue.
+// A ReentrantLock rather than a monitor, as a join can wait on the DB (the next block of player
+// ids) with it held, and a virtual thread blocked inside synchronized pins its carrier thread.
+// A game that isn't here (not in signup, or unknown) is left to the usual DB code:
+// every method says so by returning NOT_HERE / empty.
+// Starting and deleting a game run through exclusive(): the game's pending changes are
+// saved first, the DB work runs with the game held, and the game is then reloaded or dropped.
+// Listings (/games/opengames) still read the DB, so their counts trail by the write-behind delay.
+@Component
+@ConditionalOnProperty(name = "lobby.engine.enabled", havingValue = "true")
+public class LobbyEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(LobbyEngine.class);
+
+    public enum Seat {
+        JOINED,
+        ALREADY_JOINED,
+        FULL,
+        LEFT,
+        NOT_A_PLAYER,
+        NOT_HERE
+    }
+
+    @Autowired
+    private GameRepository gameRepository;
+
+    @Autowired
+    private PlayerRepository playerRepository;
+
+    @Autowired
+    private LobbyWriteBehind writeBehind;
+
+    @Autowired
+    private LobbyFeed lobbyFeed;
+
+    private final ConcurrentHashMap<Long, LiveGame> games = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void load() {
+        for (GameSummary summary : gameRepository.findSummariesByStatus(Game.GameStatus.SIGNUP, Pageable.unpaged())) {
+            games.put(summary.uid(), new LiveGame(summary.uid(), summary.name(), summary.owner(),
+                    summary.minPlayers(), summary.maxPlayers()));
+        }
+        for (LobbySeat seat : playerRepository.findSeatsByGameStatus(Game.GameStatus.SIGNUP)) {
+            LiveGame game = games.get(seat.gameId());
+            if (game != null) {
+                game.members.put(seat.username(), seat.playerId());
+            }
+        }
+        log.info("Lobby engine loaded {} games in signup", games.size());
+    }
+
+    // a game that was just created in the DB, with its owner (and whoever else is already) seated
+    public void track(Game game, List<Player> seated) {
+        LiveGame live = new LiveGame(game.getUid(), game.getName(), game.getOwner(),
+                game.getMinPlayers(), game.getMaxPlayers());
+        for (Player player : seated) {
+            live.members.put(player.getName(), player.getUid());
+        }
+        games.put(live.uid, live);
+    }
+
+    public boolean tracks(long gameId) {
+        return games.containsKey(gameId);
+    }
+
+    public Optional<Boolean> canJoin(long gameId, String username) {
+        return withGame(gameId, game -> !game.owner.equals(username) && game.members.size() < game.maxPlayers);
+    }
+
+    public Optional<Boolean> isHost(long gameId, String username) {
+        return withGame(gameId, game -> game.owner.equals(username));
+    }
+
+    public Optional<Game> snapshot(long gameId) {
+        return withGame(gameId, game -> game.toGame(true));
+    }
+
+    public Seat join(long gameId, String username) {
+        return withGame(gameId, game -> {
+            if (game.members.containsKey(username)) {
+                return Seat.ALREADY_JOINED;
+            }
+            if (!game.owner.equals(username) && game.members.size() >= game.maxPlayers) { // the host always fits
+                return Seat.FULL;
+            }
+            game.members.put(username, writeBehind.joined(gameId, username));
+            lobbyFeed.publish(LobbyEvent.Type.PLAYER_JOINED, game.toGame(false), username); // in roster order
+            return Seat.JOINED;
+        }).orElse(Seat.NOT_HERE);
+    }
+
+    public Seat leave(long gameId, String username) {
+        return withGame(gameId, game -> {
+            Long playerId = game.members.remove(username);
+            if (playerId == null) {
+                return Seat.NOT_A_PLAYER;
+            }
+            writeBehind.left(gameId, playerId);
+            lobbyFeed.publish(LobbyEvent.Type.PLAYER_LEFT, game.toGame(false), username);
+            return Seat.LEFT;
+        }).orElse(Seat.NOT_HERE);
+    }
+
+    // Runs DB work on a game (start, delete) with the game held and its roster saved, then
+    // reloads it from the DB, or drops it if it left signup. Games that aren't here just run it.
+    public <T> T exclusive(long gameId, Supplier<T> action) {
+        while (true) {
+            LiveGame game = games.get(gameId);
+            if (game == null) {
+                return action.get();
+            }
+            game.lock.lock();
+            try {
+                if (game.removed) {
+                    continue;
+                }
+                try {
+                    writeBehind.awaitFlushed();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while saving the lobby");
+                }
+                try {
+                    return action.get();
+                } finally {
+                    Optional<GameSummary> now = gameRepository.findSummaryByUid(gameId);
+                    if (now.isEmpty() || now.get().status() != Game.GameStatus.SIGNUP) {
+                        game.removed = true;
+                        games.remove(gameId, game);
+                    }
+                }
+            } finally {
+                game.lock.unlock();
+            }
+        }
+    }
+
+    // Runs 'action' under the game's lock, if we have the game. A thread that was waiting
+    // for a game that got dropped meanwhile looks it up again (and finds nothing).
+    private <T> Optional<T> withGame(long gameId, Function<LiveGame, T> action) {
+        while (true) {
+            LiveGame game = games.get(gameId);
+            if (game == null) {
+                return Optional.empty();
+            }
+            game.lock.lock();
+            try {
+                if (!game.removed) {
+                    return Optional.ofNullable(action.apply(game));
+                }
+            } finally {
+                game.lock.unlock();
+            }
+        }
+    }
+
+    private static final class LiveGame {
+        final long uid;
+        final String name;
+        final String owner;
+        final int minPlayers;
+        final int maxPlayers;
+        final ReentrantLock lock = new ReentrantLock();
+        final Map<String, Long> members = new LinkedHashMap<>(); // username -> player id, in joining order; guarded by lock
+        boolean removed;                                   // guarded by lock
+
+        LiveGame(long uid, String name, String owner, int minPlayers, int maxPlayers) {
+            this.uid = uid;
+            this.name = name;
+            this.owner = owner;
+            this.minPlayers = minPlayers;
+            this.maxPlayers = maxPlayers;
+        }
+
+        // a detached Game to answer or announce with; the roster's players carry id and name
+        Game toGame(boolean withPlayers) {
+            Game game = new Game();
+            game.setUid(uid);
+            game.setName(name);
+            game.setOwner(owner);
+            game.setMinPlayers(minPlayers);
+            game.setMaxPlayers(maxPlayers);
+            game.setStatus(Game.GameStatus.SIGNUP);
+            game.setPlayerCount(members.size());
+            if (withPlayers) {
+                List<Player> players = new ArrayList<>(members.size());
+                members.forEach((member, playerId) -> {
+                    Player player = new Player();
+                    player.setUid(playerId);
+                    player.setName(member);
+                    player.setGame(game);
+                    players.add(player);
+                });
+                game.setPlayers(players);
+            }
+            return game;
+        }
+    }
+}
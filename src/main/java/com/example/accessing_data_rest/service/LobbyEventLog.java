@@ -0,0 +1,484 @@
+package com.example.accessing_data_rest.service;
+
+import com.example.accessing_data_rest.dto.GameSummary;
+import com.example.accessing_data_rest.dto.LobbyEvent;
+import com.example.accessing_data_rest.model.Game;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+// Optional (lobby.event-log.enabled) append-only log of the lobby feed's events, in lobby.event-log.dir,
+// and the LobbyView read model rebuilt from it: every game's summary row and seat count. At startup the
+// view comes from the newest snapshot plus the events after it, instead of from a scan of the game
+// table, and GameSearchIndex loads from the view. Event seqs carry on across restarts.
+//
+// The DB stays the system of record: LobbyFeed appends each event as it numbers it, after the commit
+// (so only changes that happened are logged), on its dispatcher thread, which is the only writer.
+//   events-<first seq>.log   segments of lobby.event-log.segment-size, memory-mapped; each record
+//                            is [length][crc32][event], the length written last, so a record that
+//                            was cut short reads as the end of the log
+//   snapshot-<seq>.bin       the whole view as of seq, written every lobby.event-log.snapshot-every
+//                            events (and on shutdown) by a background thread, from a copy taken on
+//                            the dispatcher. Segments it covers, and older snapshots, are then deleted.
+// Mapped pages survive the process dying, not the machine; and an event committed but not yet
+// appended when the process died is lost. So the rebuilt view is checked against the DB (one
+// aggregate query, see LobbyView.Fingerprint), and rebuilt from the game table if it is off.
+@Component
+@ConditionalOnProperty(name = "lobby.event-log.enabled", havingValue = "true")
+public class LobbyEventLog {
+
+    private static final Logger log = LoggerFactory.getLogger(LobbyEventLog.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x4c4f4259; // "LOBY"
+    private static final int SNAPSHOT_VERSION = 3; // 2: no rosters, 3: game versions
+    private static final int RECORD_HEADER = 8; // length + crc
+    private static final Game.GameStatus[] STATUSES = Game.GameStatus.values();
+    private static final LobbyEvent.Type[] TYPES = LobbyEvent.Type.values();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Path dir;
+    private final int segmentSize;
+    private final long snapshotEvery;
+
+    private final ExecutorService snapshotWriter = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "lobby-event-log-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean snapshotting = new AtomicBoolean();
+    private final ConcurrentSkipListMap<Long, Path> segments = new ConcurrentSkipListMap<>(); // first seq -> file
+
+    private LobbyView view;
+
+    // dispatcher thread only (after open)
+    private MappedByteBuffer segment;
+    private volatile long lastSnapshotSeq; // read on shutdown too
+
+    public LobbyEventLog(@Value("${lobby.event-log.dir:${lobby.h2.dir:./db}/lobby-log}") String dir,
+                         @Value("${lobby.event-log.segment-size:64MB}") DataSize segmentSize,
+                         @Value("${lobby.event-log.snapshot-every:100000}") long snapshotEvery) {
+        this.dir = Paths.get(dir);
+        this.segmentSize = (int) Math.min(segmentSize.toBytes(), Integer.MAX_VALUE);
+        this.snapshotEvery = snapshotEvery;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        long started = System.nanoTime();
+        Files.createDirectories(dir);
+        LobbyView.Snapshot snapshot = readNewestSnapshot();
+        view = new LobbyView(snapshot.seq(), snapshot.entries());
+        lastSnapshotSeq = snapshot.seq();
+        Tail tail = replay();
+        String source = snapshot.seq() > 0 ? "snapshot " + snapshot.seq() + " and the log" : "the log";
+        LobbyView.Fingerprint expected = databaseFingerprint();
+        if (!view.fingerprint().equals(expected)) {
+            log.warn("Lobby event log at seq {} doesn't match the DB ({} vs {}), rebuilding it from the tables",
+                    view.sequence(), view.fingerprint(), expected);
+            view = new LobbyView(view.sequence(), loadFromDatabase()); // the seq carries on: feed clients never see one twice
+            writeSnapshot(view.snapshot());
+            lastSnapshotSeq = view.sequence();
+            for (Path file : segments.values()) { // all covered by the snapshot
+                Files.deleteIfExists(file);
+            }
+            segments.clear();
+            tail = null;
+            source = "the DB";
+        }
+        if (tail == null) {
+            startSegment(view.sequence() + 1);
+        } else {
+            continueSegment(tail);
+        }
+        log.info("Lobby view at seq {}: {} games, from {} in {} ms", view.sequence(), view.size(), source,
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    public LobbyView view() {
+        return view;
+    }
+
+    // seq of the newest event in the log, where LobbyFeed carries on numbering
+    public long lastSequence() {
+        return view.sequence();
+    }
+
+    // LobbyFeed's dispatcher thread only, in seq order. The view takes the event in any case; if it
+    // can't be written, that is logged and the feed goes on (the next startup's check against the DB
+    // finds the gap and rebuilds).
+    public void append(LobbyEvent event) {
+        view.apply(event);
+        try {
+            byte[] record = encode(event);
+            if (segment.remaining() < RECORD_HEADER + record.length) {
+                startSegment(event.seq());
+            }
+            CRC32 crc = new CRC32();
+            crc.update(record);
+            int at = segment.position();
+            segment.putInt(at + 4, (int) crc.getValue());
+            segment.put(at + RECORD_HEADER, record);
+            segment.putInt(at, record.length); // last: until now, this was the end of the log
+            segment.position(at + RECORD_HEADER + record.length);
+            if (event.seq() - lastSnapshotSeq >= snapshotEvery) {
+                snapshotInBackground();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not append lobby event {} to the log", event.seq(), e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        snapshotWriter.shutdown();
+        snapshotWriter.awaitTermination(1, TimeUnit.MINUTES);
+        if (view.sequence() > lastSnapshotSeq) { // the feed has stopped with the context by now
+            try {
+                writeSnapshot(view.snapshot());
+            } catch (IOException e) {
+                log.warn("Could not write the lobby snapshot on shutdown, the log is replayed instead", e);
+            }
+        }
+        if (segment != null) {
+            segment.force();
+        }
+    }
+
+    private void snapshotInBackground() {
+        if (!snapshotting.compareAndSet(false, true)) {
+            return; // the one in progress will do
+        }
+        LobbyView.Snapshot snapshot = view.snapshot();
+        lastSnapshotSeq = snapshot.seq();
+        snapshotWriter.execute(() -> {
+            try {
+                writeSnapshot(snapshot);
+            } catch (IOException | RuntimeException e) {
+                log.error("Could not write lobby snapshot {}", snapshot.seq(), e);
+            } finally {
+                snapshotting.set(false);
+            }
+        });
+    }
+
+    // --- snapshots ---
+
+    private void writeSnapshot(LobbyView.Snapshot snapshot) throws IOException {
+        long started = System.nanoTime();
+        Path tmp = dir.resolve("snapshot.tmp");
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new CheckedOutputStream(Files.newOutputStream(tmp), crc), 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(snapshot.seq());
+            out.writeInt(snapshot.entries().size());
+            for (LobbyView.Entry entry : snapshot.entries()) {
+                GameSummary game = entry.game();
+                out.writeLong(game.uid());
+                writeString(out, game.name());
+                writeString(out, game.owner());
+                out.writeByte(game.status() == null ? -1 : game.status().ordinal());
+                out.writeInt(game.playerCount());
+                out.writeInt(game.minPlayers());
+                out.writeInt(game.maxPlayers());
+                out.writeLong(entry.version());
+            }
+            out.flush();
+            out.writeLong(crc.getValue()); // of everything before it
+        }
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tmp, dir.resolve(String.format("snapshot-%020d.bin", snapshot.seq())),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        compact(snapshot.seq());
+        log.info("Wrote lobby snapshot {} ({} games) in {} ms", snapshot.seq(), snapshot.entries().size(),
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    // drops the snapshots before this one, and the segments it covers: a segment is covered
+    // when the next one starts at or before seq + 1 (the one being written never is)
+    private void compact(long seq) throws IOException {
+        for (Path older : files("snapshot-", ".bin").values()) {
+            if (seqOf(older, "snapshot-") < seq) {
+                Files.deleteIfExists(older);
+            }
+        }
+        for (Map.Entry<Long, Path> entry : segments.entrySet()) {
+            Long next = segments.higherKey(entry.getKey());
+            if (next != null && next <= seq + 1) {
+                segments.remove(entry.getKey());
+                Files.deleteIfExists(entry.getValue());
+            }
+        }
+    }
+
+    private LobbyView.Snapshot readNewestSnapshot() throws IOException {
+        List<Path> newestFirst = new ArrayList<>(files("snapshot-", ".bin").values());
+        for (int i = newestFirst.size() - 1; i >= 0; i--) {
+            Path file = newestFirst.get(i);
+            try {
+                return readSnapshot(file);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Skipping unreadable lobby snapshot {}: {}", file.getFileName(), e.toString());
+            }
+        }
+        return new LobbyView.Snapshot(0, List.of());
+    }
+
+    // mapped, checksummed in one go, then parsed straight from the mapping
+    private static LobbyView.Snapshot readSnapshot(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            CRC32 crc = new CRC32();
+            crc.update(in.slice(0, in.limit() - Long.BYTES));
+            if (in.getLong(in.limit() - Long.BYTES) != crc.getValue()) {
+                throw new IOException("checksum mismatch");
+            }
+            if (in.getInt() != SNAPSHOT_MAGIC || in.getInt() != SNAPSHOT_VERSION) {
+                throw new IOException("not a lobby snapshot");
+            }
+            long seq = in.getLong();
+            int count = in.getInt();
+            List<LobbyView.Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long uid = in.getLong();
+                String name = readString(in);
+                String owner = readString(in);
+                byte status = in.get();
+                int playerCount = in.getInt();
+                int minPlayers = in.getInt();
+                int maxPlayers = in.getInt();
+                entries.add(new LobbyView.Entry(new GameSummary(uid, name, minPlayers, maxPlayers, owner,
+                        status < 0 ? null : STATUSES[status], playerCount), in.getLong()));
+            }
+            return new LobbyView.Snapshot(seq, entries);
+        }
+    }
+
+    // --- segments ---
+
+    // Applies the events after the snapshot, segment by segment, and returns where the last one
+    // ends (null if there are none). Stops at the first record that is missing, torn or out of
+    // sequence; any later segments can't be applied past that gap and are deleted.
+    private Tail replay() throws IOException {
+        segments.putAll(files("events-", ".log"));
+        Tail tail = null;
+        for (Map.Entry<Long, Path> entry : segments.entrySet()) {
+            Long next = segments.higherKey(entry.getKey());
+            if (next != null && next <= view.sequence() + 1) {
+                continue; // covered by the snapshot
+            }
+            if (tail != null && tail.stoppedEarly()) {
+                segments.remove(entry.getKey());
+                Files.deleteIfExists(entry.getValue());
+                continue;
+            }
+            tail = replay(entry.getValue());
+        }
+        return tail;
+    }
+
+    private Tail replay(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            CRC32 crc = new CRC32();
+            while (buffer.remaining() >= RECORD_HEADER) {
+                int at = buffer.position();
+                int length = buffer.getInt(at);
+                if (length <= 0 || length > buffer.remaining() - RECORD_HEADER) {
+                    return new Tail(file, at, length != 0);
+                }
+                byte[] record = new byte[length];
+                buffer.get(at + RECORD_HEADER, record);
+                crc.reset();
+                crc.update(record);
+                if ((int) crc.getValue() != buffer.getInt(at + 4)) {
+                    return new Tail(file, at, true);
+                }
+                LobbyEvent event = decode(record);
+                if (event.seq() > view.sequence() + 1) {
+                    log.warn("Lobby event log skips from seq {} to {} in {}", view.sequence(), event.seq(), file.getFileName());
+                    return new Tail(file, at, true);
+                }
+                if (event.seq() == view.sequence() + 1) {
+                    view.apply(event);
+                }
+                buffer.position(at + RECORD_HEADER + length);
+            }
+            return new Tail(file, buffer.position(), false);
+        }
+    }
+
+    private void startSegment(long firstSeq) throws IOException {
+        Path file = dir.resolve(String.format("events-%020d.log", firstSeq));
+        segment = map(file, 0);
+        segments.put(firstSeq, file);
+    }
+
+    private void continueSegment(Tail tail) throws IOException {
+        segment = map(tail.file(), tail.end());
+    }
+
+    // maps the whole segment, and zeroes what was written from 'from' on, so a torn record there
+    // isn't read back (the part the file grows by is zero already)
+    private MappedByteBuffer map(Path file, int from) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            int written = (int) channel.size();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentSize, written));
+            byte[] zeros = new byte[1 << 16];
+            for (int at = from; at < written; at += zeros.length) {
+                buffer.put(at, zeros, 0, Math.min(zeros.length, written - at));
+            }
+            buffer.position(from);
+            return buffer;
+        }
+    }
+
+    private Map<Long, Path> files(String prefix, String suffix) throws IOException {
+        Map<Long, Path> found = new TreeMap<>();
+        try (Stream<Path> listing = Files.list(dir)) {
+            listing.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(prefix) && name.endsWith(suffix);
+            }).forEach(file -> found.put(seqOf(file, prefix), file));
+        }
+        return found;
+    }
+
+    private static long seqOf(Path file, String prefix) { // the seq in its name
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(prefix.length(), name.indexOf('.')));
+    }
+
+    // --- the DB side ---
+
+    private LobbyView.Fingerprint databaseFingerprint() {
+        return jdbcTemplate.query("SELECT status, COUNT(*), SUM(player_count), SUM(version), MAX(game_id) FROM game GROUP BY status",
+                (rs, row) -> {
+                    String status = rs.getString(1);
+                    return new LobbyView.Fingerprint(rs.getLong(2),
+                            Collections.singletonMap(status == null ? null : Game.GameStatus.valueOf(status), rs.getLong(2)),
+                            rs.getLong(3), rs.getLong(4), rs.getLong(5));
+                }).stream().reduce(LobbyView.Fingerprint.NONE, LobbyView.Fingerprint::plus);
+    }
+
+    private List<LobbyView.Entry> loadFromDatabase() {
+        List<LobbyView.Entry> entries = new ArrayList<>();
+        jdbcTemplate.query("SELECT game_id, name, min_players, max_players, owner, status, player_count, version"
+                        + " FROM game ORDER BY game_id",
+                rs -> {
+                    String status = rs.getString("status");
+                    entries.add(new LobbyView.Entry(new GameSummary(rs.getLong("game_id"), rs.getString("name"),
+                            rs.getInt("min_players"), rs.getInt("max_players"), rs.getString("owner"),
+                            status == null ? null : Game.GameStatus.valueOf(status), rs.getInt("player_count")),
+                            rs.getLong("version")));
+                });
+        return entries;
+    }
+
+    // --- records ---
+
+    private static byte[] encode(LobbyEvent event) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(event.seq());
+        out.writeByte(event.type().ordinal());
+        out.writeLong(event.gameId());
+        writeString(out, event.gameName());
+        writeString(out, event.owner());
+        out.writeByte(event.status() == null ? -1 : event.status().ordinal());
+        out.writeInt(event.playerCount());
+        out.writeInt(event.minPlayers());
+        out.writeInt(event.maxPlayers());
+        writeString(out, event.username());
+        out.writeLong(event.version()); // last, so records from before it still read (as version 0)
+        return bytes.toByteArray();
+    }
+
+    private static LobbyEvent decode(byte[] record) {
+        ByteBuffer in = ByteBuffer.wrap(record);
+        try {
+            long seq = in.getLong();
+            LobbyEvent.Type type = TYPES[in.get()];
+            long gameId = in.getLong();
+            String gameName = readString(in);
+            String owner = readString(in);
+            byte status = in.get();
+            int playerCount = in.getInt();
+            int minPlayers = in.getInt();
+            int maxPlayers = in.getInt();
+            String username = readString(in);
+            long version = in.remaining() >= Long.BYTES ? in.getLong() : 0;
+            return new LobbyEvent(seq, type, gameId, gameName, owner, status < 0 ? null : STATUSES[status],
+                    playerCount, minPlayers, maxPlayers, version, username);
+        } catch (BufferUnderflowException e) {
+            throw new UncheckedIOException(new IOException("truncated lobby event", e));
+        }
+    }
+
+    // a length (-1 for null), then UTF-8; DataOutput.writeUTF can't say null and stops at 64K
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // where replay ended: the segment to go on appending to, and whether anything unreadable was left
+    private record Tail(Path file, int end, boolean stoppedEarly) {
+    }
+}
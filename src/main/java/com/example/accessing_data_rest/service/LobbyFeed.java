@@ -0,0 +1,322 @@
+package com.example.accessing_data_rest.service;
+
+import com.example.accessing_data_rest.dto.LobbyEvent;
+import com.example.accessing_data_rest.model.Game;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Pushes lobby changes (game created, player joined/left, status changed, game deleted)
+// to subscribers instead of having clients poll /games/opengames.
+//
+// Everything that touches listeners or history runs on one dispatcher thread: it numbers
+// the events, keeps the last few in memory for clients that reconnect, and fans them out.
+// Publishers only hand an event over. SSE clients are async requests, so an idle connection
+// costs a registered emitter, not a thread.
+// The dispatcher never writes to a connection itself: each SSE client has a buffer of
+// lobby.feed.client-buffer events, and a small pool of sender threads writes it out. A client
+// that lets its buffer fill up loses what is in it and gets RESYNC instead, so a slow or stalled
+// connection holds up neither the other clients nor the in-process listeners (the search index,
+// the event log), which the dispatcher still calls directly.
+// With the event log on (LobbyEventLog), each event is appended there as it is numbered, and
+// numbering carries on from the log after a restart.
+@Component
+public class LobbyFeed {
+
+    private static final Logger log = LoggerFactory.getLogger(LobbyFeed.class);
+
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "lobby-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong lastSeq = new AtomicLong(); // written on the dispatcher only
+    private final AtomicLong lobbyVersion = new AtomicLong(); // bumped by whoever commits a change
+
+    // dispatcher thread only
+    private final List<LobbyListener> listeners = new ArrayList<>();
+    private final ArrayDeque<LobbyEvent> history = new ArrayDeque<>();
+    private final int historySize;
+
+    private final Duration sseTimeout;
+    private final int clientBuffer;
+    private final ExecutorService senders;
+
+    @Autowired(required = false)
+    private LobbyEventLog eventLog;
+
+    public LobbyFeed(@Value("${lobby.feed.history-size:1024}") int historySize,
+                     @Value("${lobby.feed.sse-timeout:30m}") Duration sseTimeout,
+                     @Value("${lobby.feed.client-buffer:256}") int clientBuffer,
+                     @Value("${lobby.feed.sender-threads:4}") int senderThreads) {
+        this.historySize = historySize;
+        this.sseTimeout = sseTimeout;
+        this.clientBuffer = clientBuffer;
+        this.senders = Executors.newFixedThreadPool(senderThreads, r -> {
+            Thread thread = new Thread(r, "lobby-feed-send");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void continueSequence() {
+        if (eventLog != null) {
+            lastSeq.set(eventLog.lastSequence());
+        }
+    }
+
+    // Called by the services as part of a change. Inside a transaction the event waits for the
+    // commit (and is dropped on rollback), so subscribers never see changes that didn't happen.
+    // Called under the game's lock (see GameService.mutateGame), that is still held at commit, so
+    // the events of one game are handed over in the order their changes committed.
+    // The event is taken from the game at commit, once Hibernate has flushed it and bumped its version.
+    public void publish(LobbyEvent.Type type, Game game, String username) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    committed(LobbyEvent.of(type, game, username));
+                }
+            });
+        } else {
+            committed(LobbyEvent.of(type, game, username));
+        }
+    }
+
+    // seq of the newest event published so far (0 before the first one)
+    public long lastSequence() {
+        return lastSeq.get();
+    }
+
+    // Goes up with every change to the lobby, for ETags on the listings. Unlike the seq, which
+    // the dispatcher hands out a moment later, it moves on the committing thread, so a listing
+    // read after this changed is never served under the previous value.
+    public long lobbyVersion() {
+        return lobbyVersion.get();
+    }
+
+    // Subscribes and first replays what came after 'since' (null: only new events).
+    // Replay and subscription happen in one dispatcher step, so nothing is missed or doubled.
+    public void subscribe(LobbyListener listener, Long since) {
+        dispatcher.execute(() -> {
+            try {
+                replay(listener, since);
+                listeners.add(listener);
+            } catch (Exception e) {
+                log.debug("Lobby listener failed during replay, not subscribing", e);
+            }
+        });
+    }
+
+    public void unsubscribe(LobbyListener listener) {
+        dispatcher.execute(() -> listeners.remove(listener));
+    }
+
+    // An SSE stream for GameController. Last-Event-ID / ?since= resume from a seq.
+    public SseEmitter openStream(Long since) {
+        SseEmitter emitter = new SseEmitter(sseTimeout.toMillis());
+        SseListener listener = new SseListener(emitter, clientBuffer, senders);
+        emitter.onCompletion(() -> unsubscribe(listener));
+        emitter.onTimeout(() -> unsubscribe(listener));
+        emitter.onError(e -> unsubscribe(listener));
+        subscribe(listener, since);
+        return emitter;
+    }
+
+    // keeps proxies from closing idle streams, and finds dead clients
+    @Scheduled(fixedRateString = "${lobby.feed.heartbeat-interval:20s}")
+    public void heartbeat() {
+        dispatcher.execute(() -> deliver(LobbyListener::onHeartbeat));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    private void committed(LobbyEvent event) {
+        lobbyVersion.incrementAndGet();
+        dispatch(event);
+    }
+
+    private void dispatch(LobbyEvent unnumbered) {
+        dispatcher.execute(() -> {
+            LobbyEvent event = unnumbered.withSeq(lastSeq.get() + 1);
+            lastSeq.set(event.seq());
+            history.addLast(event);
+            if (history.size() > historySize) {
+                history.removeFirst();
+            }
+            if (eventLog != null) {
+                eventLog.append(event); // before the listeners, so its view is never behind them
+            }
+            deliver(listener -> listener.onLobbyEvent(event));
+        });
+    }
+
+    private void replay(LobbyListener listener, Long since) throws Exception {
+        long last = lastSeq.get();
+        if (since == null || since == last) {
+            return;
+        }
+        LobbyEvent oldest = history.peekFirst();
+        // from the future (we restarted without the event log) or older than what we remember: client must reload
+        if (since > last || oldest == null || since < oldest.seq() - 1) {
+            listener.onLobbyEvent(LobbyEvent.resync(last));
+            return;
+        }
+        for (LobbyEvent event : history) {
+            if (event.seq() > since) {
+                listener.onLobbyEvent(event);
+            }
+        }
+    }
+
+    private void deliver(Delivery delivery) {
+        Iterator<LobbyListener> it = listeners.iterator();
+        while (it.hasNext()) {
+            LobbyListener listener = it.next();
+            try {
+                delivery.to(listener);
+            } catch (Exception e) { // closed connection or broken listener: drop it
+                it.remove();
+                log.debug("Dropping lobby listener", e);
+            }
+        }
+    }
+
+    // for tests: returns once everything handed to the dispatcher so far is done
+    void awaitDispatched() throws Exception {
+        dispatcher.submit(() -> { }).get();
+    }
+
+    private interface Delivery {
+        void to(LobbyListener listener) throws Exception;
+    }
+
+    // One SSE client. The dispatcher only queues messages here, under a lock held for a queue
+    // operation, never for a send; one sender task at a time drains the queue, so messages go
+    // out in order. A full queue is swapped for a single RESYNC: the client reloads the listing
+    // and carries on from there. Once a send fails, the next event throws, which unsubscribes it.
+    // Package-private for tests.
+    static final class SseListener implements LobbyListener {
+        private final SseEmitter emitter;
+        private final int capacity;
+        private final Executor sender;
+
+        private final ReentrantLock lock = new ReentrantLock();
+        // guarded by lock
+        private final ArrayDeque<SseEmitter.SseEventBuilder> queue = new ArrayDeque<>();
+        private boolean draining;
+        private boolean closed;
+
+        SseListener(SseEmitter emitter, int capacity, Executor sender) {
+            this.emitter = emitter;
+            this.capacity = capacity;
+            this.sender = sender;
+        }
+
+        @Override
+        public void onLobbyEvent(LobbyEvent event) throws IOException {
+            lock.lock();
+            try {
+                if (closed) {
+                    throw new IOException("Lobby feed client is gone");
+                }
+                if (queue.size() >= capacity) {
+                    log.debug("Lobby feed client fell {} events behind, resyncing it", queue.size());
+                    queue.clear();
+                    queue.add(message(LobbyEvent.resync(event.seq())));
+                } else {
+                    queue.add(message(event));
+                }
+                drainLater();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void onHeartbeat() throws IOException {
+            lock.lock();
+            try {
+                if (closed) {
+                    throw new IOException("Lobby feed client is gone");
+                }
+                if (queue.isEmpty()) { // a client with messages queued hears from us anyway
+                    queue.add(SseEmitter.event().comment("keep-alive"));
+                    drainLater();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private static SseEmitter.SseEventBuilder message(LobbyEvent event) {
+            return SseEmitter.event()
+                    .id(String.valueOf(event.seq()))
+                    .name(event.type().name())
+                    .data(event, MediaType.APPLICATION_JSON);
+        }
+
+        private void drainLater() { // callers hold the lock
+            if (!draining) {
+                draining = true;
+                sender.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                SseEmitter.SseEventBuilder next;
+                lock.lock();
+                try {
+                    next = queue.poll();
+                    if (next == null) {
+                        draining = false;
+                        return;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                try {
+                    emitter.send(next);
+                } catch (IOException | RuntimeException e) { // closed connection
+                    log.debug("Lobby feed client is gone", e);
+                    lock.lock();
+                    try {
+                        closed = true;
+                        queue.clear();
+                        draining = false;
+                    } finally {
+                        lock.unlock();
+                    }
+                    return;
+                }
+            }
+        }
+    }
+}
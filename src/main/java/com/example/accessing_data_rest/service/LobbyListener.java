@@ -0,0 +1,15 @@
+package com.example.accessing_data_rest.service;
+
+import com.example.accessing_data_rest.dto.LobbyEvent;
+
+// Something that wants lobby changes pushed to it: an SSE client, or an in-process view.
+// Called on the LobbyFeed dispatcher thread, one event at a time, in seq order, so it must
+// not block: SSE clients only queue the event for their sender (see LobbyFeed.SseListener).
+// Throwing unsubscribes the listener.
+public interface LobbyListener {
+
+    void onLobbyEvent(LobbyEvent event) throws Exception;
+
+    default void onHeartbeat() throws Exception { // for connections that must show signs of life
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.accessing_data_rest.service;
+
+import com.example.accessing_data_rest.model.Game;
+import com.example.accessing_data_rest.model.User;
+
+import java.util.Optional;
+
+// The reads and writes behind the lobby's busiest calls: joining and leaving a game, the
+// canJoin/isHost probes, showing a game with its roster, and looking a user up by name (sign-in).
+// GameService and UserService keep the rules, the locking and the retries; this is only the
+// data access. Picked with lobby.store (see application.properties):
+//  - jpa (default): JpaLobbyStore, through the repositories and Hibernate
+//  - jdbc:          JdbcLobbyStore, hand-written SQL with JdbcTemplate
+// LobbyStoreBenchmark (src/jmh/java) compares the two.
+//
+// Games and users handed out are plain objects to read; changes go through the methods below.
+// The writes run in the caller's transaction (GameService.mutateGame) and fail with an
+// OptimisticLockingFailureException when the game changed since it was read, for the caller to retry.
+public interface LobbyStore {
+
+    // the game row, without its players
+    Optional<Game> findGame(long gameId);
+
+    // the game, its players and their users
+    Optional<Game> findGameWithPlayers(long gameId);
+
+    Optional<User> findUser(String name);
+
+    boolean isPlayer(long gameId, String username);
+
+    // Seats the user in a game read in this transaction, taking a seat (playerCount) and
+    // moving the game's version on. user may be null: a player without an account.
+    void addPlayer(Game game, String username, User user);
+
+    // Removes the user's player from a game read in this transaction and frees the seat.
+    // False if the user is not a player in it.
+    boolean removePlayer(Game game, String username);
+}
@@ -0,0 +1,145 @@
+package com.example.accessing_data_rest.service;
+
+import com.example.accessing_data_rest.dto.GameSummary;
+import com.example.accessing_data_rest.dto.LobbyEvent;
+import com.example.accessing_data_rest.model.Game;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// The lobby as the event log sees it: every game's summary row and version, plus the seq of the
+// last event applied. Built by LobbyEventLog from a snapshot and the events after it, then kept current by
+// the events it appends. Readers share a read lock; the feed's dispatcher thread is the only writer.
+//
+// Rosters aren't kept: nothing reads them from here ("my games" and the membership checks go to
+// the player table's indexes), and each event already carries the game's seat count.
+public class LobbyView {
+
+    // One game. Immutable, so a snapshot can be written out on another thread while the view moves on.
+    public record Entry(GameSummary game, long version) {
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // guarded by lock
+    private final TreeMap<Long, Entry> games = new TreeMap<>(); // by uid
+    private long seq;
+
+    LobbyView(long seq) {
+        this.seq = seq;
+    }
+
+    LobbyView(long seq, Collection<Entry> entries) {
+        this.seq = seq;
+        for (Entry entry : entries) {
+            games.put(entry.game().uid(), entry);
+        }
+    }
+
+    public long sequence() {
+        lock.readLock().lock();
+        try {
+            return seq;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Hands every game to the consumer in uid order and returns the seq they are current as of,
+    // so the caller can follow the feed from there (LobbyFeed.subscribe(listener, since)).
+    public long forEachGame(Consumer<GameSummary> consumer) {
+        lock.readLock().lock();
+        try {
+            for (Entry entry : games.values()) {
+                consumer.accept(entry.game());
+            }
+            return seq;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return games.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // What LobbyEventLog compares with the DB at startup, see Fingerprint
+    Fingerprint fingerprint() {
+        lock.readLock().lock();
+        try {
+            long playerCounts = 0;
+            long versions = 0;
+            Map<Game.GameStatus, Long> byStatus = new HashMap<>();
+            for (Entry entry : games.values()) {
+                playerCounts += entry.game().playerCount();
+                versions += entry.version();
+                byStatus.merge(entry.game().status(), 1L, Long::sum);
+            }
+            return new Fingerprint(games.size(), byStatus, playerCounts, versions, games.isEmpty() ? 0 : games.lastKey());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // a copy of the games to write out, cheap: the entries themselves are shared
+    Snapshot snapshot() {
+        lock.readLock().lock();
+        try {
+            return new Snapshot(seq, new ArrayList<>(games.values()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void apply(LobbyEvent event) {
+        lock.writeLock().lock();
+        try {
+            seq = event.seq();
+            switch (event.type()) {
+                case GAME_CREATED, PLAYER_JOINED, PLAYER_LEFT, STATUS_CHANGED -> games.put(event.gameId(), entry(event));
+                case GAME_DELETED -> games.remove(event.gameId());
+                case RESYNC -> { } // never published, only sent to a listener on replay
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // An event from the lobby engine has no version (0): the game keeps the one it has until
+    // LobbyWriteBehind announces it as saved.
+    private Entry entry(LobbyEvent event) {
+        GameSummary game = new GameSummary(event.gameId(), event.gameName(), event.minPlayers(), event.maxPlayers(),
+                event.owner(), event.status(), event.playerCount());
+        Entry old = games.get(event.gameId());
+        return new Entry(game, event.version() == 0 && old != null ? old.version() : event.version());
+    }
+
+    record Snapshot(long seq, List<Entry> entries) {
+    }
+
+    // Cheap totals that a lost tail of the log (events committed but never appended) throws off:
+    // games, how many are in each status, their playerCounts and versions, and the newest game's uid.
+    // Every change to a game bumps its version, so a lost event shows in the sum of versions even
+    // when the counts come out even (a start or finish, a join in one game and a leave in another).
+    record Fingerprint(long games, Map<Game.GameStatus, Long> byStatus, long playerCounts, long versions, long maxUid) {
+        static final Fingerprint NONE = new Fingerprint(0, Map.of(), 0, 0, 0);
+
+        Fingerprint plus(Fingerprint other) {
+            Map<Game.GameStatus, Long> statuses = new HashMap<>(byStatus);
+            other.byStatus.forEach((status, count) -> statuses.merge(status, count, Long::sum));
+            return new Fingerprint(games + other.games, statuses, playerCounts + other.playerCounts,
+                    versions + other.versions, Math.max(maxUid, other.maxUid));
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.accessing_data_rest.service;
+
+import com.example.accessing_data_rest.dto.LobbyEvent;
+import com.example.accessing_data_rest.model.User;
+import com.example.accessing_data_rest.repositories.GameRepository;
+import com.example.accessing_data_rest.repositories.UserRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// The persistence half of the lobby engine. LobbyEngine changes its rosters in memory and
+// queues each seat change here; one writer thread saves the queue to the DB in order, a batch
+// per transaction (JDBC batch inserts and deletes), then recounts Game.playerCount for the
+// games it touched.
+//
+// Player ids are handed out at join time (see PlayerIdAllocator), so the engine can answer
+// with real ids and a leave deletes exactly the row its join inserted, whichever batch either
+// lands in.
+//
+// The writes go past Hibernate, so once a batch is committed its games (and deleted players)
+// are evicted from the second-level cache, and each game is announced on the lobby feed as saved.
+//
+// The bookkeeping below is guarded by a ReentrantLock, not by synchronized: joined() may
+// wait for the next id block from the DB with it held, which would pin a virtual thread.
+//
+// A batch that fails is retried change by change; a change that still fails is logged and
+// dropped (PlayerCountReconciler repairs the count). Changes still queued when the process
+// dies are lost; a normal shutdown drains the queue first.
+@Component
+@ConditionalOnProperty(name = "lobby.engine.enabled", havingValue = "true")
+public class LobbyWriteBehind {
+
+    private static final Logger log = LoggerFactory.getLogger(LobbyWriteBehind.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityCacheEvictor cacheEvictor;
+
+    @Autowired
+    private LobbyFeed lobbyFeed;
+
+    @Autowired
+    private GameRepository gameRepository;
+
+    @Autowired
+    private GameLockManager gameLocks;
+
+    @Autowired
+    private PlayerIdAllocator playerIds;
+
+    private final LinkedBlockingQueue<SeatChange> queue = new LinkedBlockingQueue<>();
+    private final int batchSize;
+    private final Thread writer;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition savedMoved = lock.newCondition();
+
+    // guarded by lock
+    private long queued; // changes queued so far
+    private long saved;  // ... and saved, for awaitFlushed()
+
+    private volatile boolean running = true;
+
+    public LobbyWriteBehind(@Value("${lobby.engine.write-batch-size:256}") int batchSize) {
+        this.batchSize = batchSize;
+        this.writer = new Thread(this::run, "lobby-write-behind");
+        this.writer.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        writer.start();
+    }
+
+    // queues the insert and returns the new player's id
+    public long joined(long gameId, String username) {
+        lock.lock();
+        try {
+            long playerId = playerIds.next();
+            enqueue(new SeatChange(gameId, playerId, username, true));
+            return playerId;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void left(long gameId, long playerId) {
+        lock.lock();
+        try {
+            enqueue(new SeatChange(gameId, playerId, null, false));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Blocks until everything queued before this call is in the DB.
+    public void awaitFlushed() throws InterruptedException {
+        lock.lock();
+        try {
+            long target = queued;
+            while (saved < target) {
+                savedMoved.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        awaitFlushed();
+        running = false;
+        writer.interrupt();
+    }
+
+    private void enqueue(SeatChange change) { // callers hold the lock, so 'queued' and the queue agree
+        queue.add(change);
+        queued++;
+    }
+
+    private void markSaved(int count) {
+        lock.lock();
+        try {
+            saved += count;
+            savedMoved.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        List<SeatChange> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                SeatChange first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                save(batch);
+                markSaved(batch.size());
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void save(List<SeatChange> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> apply(batch));
+            evict(batch);
+        } catch (RuntimeException e) {
+            log.warn("Saving {} lobby changes failed, retrying one by one", batch.size(), e);
+            for (SeatChange change : batch) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> apply(List.of(change)));
+                } catch (RuntimeException again) {
+                    log.error("Dropping lobby change {}: {}", change, again.getMessage());
+                }
+            }
+            evict(batch); // whatever made it in
+        }
+    }
+
+    private void evict(List<SeatChange> changes) {
+        Set<Long> games = new LinkedHashSet<>();
+        for (SeatChange change : changes) {
+            if (!change.join()) {
+                cacheEvictor.evictPlayer(change.playerId());
+            }
+            games.add(change.gameId());
+        }
+        games.forEach(cacheEvictor::evictGame);
+        for (long gameId : games) {
+            announce(gameId);
+        }
+    }
+
+    // Sends each saved game's row, count and version as the DB now has them, to the search index
+    // and the event log's view, which the engine's own events only give the roster. Under the
+    // game's lock, like every other change announced from the DB, so a start or delete that
+    // commits meanwhile is never overtaken by an older row. The rows trail the engine by the
+    // write-behind delay; the last batch brings them level.
+    private void announce(long gameId) {
+        try {
+            gameLocks.withLock(gameId, () -> {
+                gameRepository.findSavedByUid(gameId)
+                        .ifPresent(game -> lobbyFeed.publish(LobbyEvent.Type.STATUS_CHANGED, game, null));
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.warn("Couldn't announce saved game {}: {}", gameId, e.getMessage());
+        }
+    }
+
+    // Inserts before deletes is safe: ids are unique, so a leave only ever deletes the row
+    // of an earlier join, which is either already saved or in this batch's inserts.
+    private void apply(List<SeatChange> changes) {
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        Set<Long> touched = new LinkedHashSet<>();
+        for (SeatChange change : changes) {
+            if (change.join()) {
+                Long userId = userCache.get(change.username(), n -> userRepository.findByName(n).stream().findFirst())
+                        .map(User::getUid)
+                        .orElse(null);
+                inserts.add(new Object[] {change.playerId(), change.username(), change.gameId(), userId});
+            } else {
+                deletes.add(new Object[] {change.playerId()});
+            }
+            touched.add(change.gameId());
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO player (player_id, name, game_game_id, user_user_id) VALUES (?, ?, ?, ?)", inserts);
+        }
+        if (!deletes.isEmpty()) {
+            jdbcTemplate.batchUpdate("DELETE FROM player WHERE player_id = ?", deletes);
+        }
+        // from the rows just written, and bumps the version and the activity time (see GameReaper);
+        // in SQL too, as a JPQL bulk update would clear the whole Game cache rather than just these games (see evict)
+        jdbcTemplate.batchUpdate("UPDATE game SET player_count = (SELECT COUNT(*) FROM player p WHERE p.game_game_id = game.game_id),"
+                + " version = version + 1, last_activity = CURRENT_TIMESTAMP WHERE game_id = ?",
+                touched.stream().map(id -> new Object[] {id}).toList());
+    }
+
+    private record SeatChange(long gameId, long playerId, String username, boolean join) {
+    }
+}
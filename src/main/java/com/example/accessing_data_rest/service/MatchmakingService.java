@@ -0,0 +1,370 @@
+package com.example.accessing_data_rest.service;
+
+import com.example.accessing_data_rest.dto.LobbyEvent;
+import com.example.accessing_data_rest.dto.LobbySeat;
+import com.example.accessing_data_rest.dto.QuickJoinTicket;
+import com.example.accessing_data_rest.model.Game;
+import com.example.accessing_data_rest.model.Player;
+import com.example.accessing_data_rest.model.User;
+import com.example.accessing_data_rest.repositories.GameRepository;
+import com.example.accessing_data_rest.repositories.PlayerRepository;
+import com.example.accessing_data_rest.repositories.UserRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Quick join: instead of every client picking a game off /games/opengames (and most of them
+// picking the first one listed), users queue with the game size they want and one matcher
+// thread seats them.
+//
+// The queue is taken in batches, oldest ticket first: the matcher waits lobby.matchmaking.batch-window
+// after the first ticket so a burst shares a batch, and takes up to batch-size tickets. A batch is one
+// transaction: one locked read of the open games that fit anyone in it, one read of who already sits
+// where, then the new players and games as JDBC batch inserts and the seat counts as updates.
+// Each user goes to the fullest game that fits (so games fill up and can start); when none does, the
+// user gets a new game of the size they asked for, as its owner, and later users in the batch fill it.
+//
+// With the lobby engine on, seats in games it holds are taken through it after commit. A game that
+// filled up meanwhile sends the ticket back to the queue, ahead of newer ones, up to MAX_ATTEMPTS times.
+//
+// Tickets live in memory: settled ones are kept for lobby.matchmaking.ticket-ttl so clients can poll
+// them, and waiting ones are lost on restart. Metrics: lobby.matchmaking.wait{result} (enqueue to
+// seat or failure), lobby.matchmaking.queued (waiting now) and lobby.matchmaking.batch.size.
+@Service
+public class MatchmakingService {
+
+    private static final Logger log = LoggerFactory.getLogger(MatchmakingService.class);
+
+    private static final int MAX_ATTEMPTS = 5;          // batches a ticket may go through before it fails
+    private static final int GAMES_PER_TICKET = 4;      // open games read per ticket in the batch
+    private static final long PURGE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    @Autowired
+    private GameRepository gameRepository;
+
+    @Autowired
+    private PlayerRepository playerRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private GameLockManager gameLocks;
+
+    @Autowired
+    private LobbyFeed lobbyFeed;
+
+    @Autowired(required = false)
+    private LobbyEngine lobbyEngine; // only with lobby.engine.enabled=true; then it owns the rosters of games in signup
+
+    private final PriorityBlockingQueue<Ticket> queue = new PriorityBlockingQueue<>(64,
+            Comparator.comparingLong((Ticket ticket) -> ticket.enqueuedAt).thenComparingLong(ticket -> ticket.id));
+    private final ConcurrentHashMap<Long, Ticket> tickets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Ticket> waiting = new ConcurrentHashMap<>(); // username -> their open ticket
+    private final AtomicLong nextTicket = new AtomicLong(1);
+
+    private final int batchSize;
+    private final Duration batchWindow;
+    private final Duration ticketTtl;
+    private final MeterRegistry registry;
+    private final DistributionSummary batchSizes;
+    private final Thread matcher;
+    private volatile boolean running = true;
+    private long lastPurge = System.nanoTime(); // matcher thread only
+
+    public MatchmakingService(@Value("${lobby.matchmaking.batch-size:64}") int batchSize,
+                              @Value("${lobby.matchmaking.batch-window:100ms}") Duration batchWindow,
+                              @Value("${lobby.matchmaking.ticket-ttl:5m}") Duration ticketTtl,
+                              MeterRegistry registry) {
+        this.batchSize = batchSize;
+        this.batchWindow = batchWindow;
+        this.ticketTtl = ticketTtl;
+        this.registry = registry;
+        this.batchSizes = DistributionSummary.builder("lobby.matchmaking.batch.size").register(registry);
+        Gauge.builder("lobby.matchmaking.queued", waiting, Map::size).register(registry);
+        this.matcher = new Thread(this::run, "lobby-matchmaker");
+        this.matcher.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        matcher.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        matcher.interrupt();
+    }
+
+    // Puts the user in the queue for a game of minPlayers..maxPlayers. A user who is already
+    // waiting keeps their place and gets their ticket back.
+    public QuickJoinTicket enqueue(String username, int minPlayers, int maxPlayers) {
+        if (minPlayers < 1 || maxPlayers < minPlayers) {
+            throw new IllegalStateException("Players must be at least 1 and maxPlayers at least minPlayers");
+        }
+        userCache.get(username, n -> userRepository.findByName(n).stream().findFirst())
+                .orElseThrow(() -> new IllegalStateException("No user found with this name"));
+        Ticket ticket = new Ticket(nextTicket.getAndIncrement(), username, minPlayers, maxPlayers);
+        Ticket existing = waiting.putIfAbsent(username, ticket);
+        if (existing != null) {
+            return existing.state;
+        }
+        tickets.put(ticket.id, ticket);
+        queue.add(ticket);
+        return ticket.state;
+    }
+
+    public Optional<QuickJoinTicket> getTicket(long ticketId) {
+        return Optional.ofNullable(tickets.get(ticketId)).map(ticket -> ticket.state);
+    }
+
+    public QuickJoinTicket cancel(long ticketId, String username) {
+        Ticket ticket = tickets.get(ticketId);
+        if (ticket == null || !ticket.username.equals(username)) {
+            throw new IllegalStateException("No such ticket for this user");
+        }
+        if (!queue.remove(ticket)) { // settled, or in the batch being matched right now
+            throw new IllegalStateException("Ticket is no longer waiting");
+        }
+        settle(ticket, QuickJoinTicket.Status.CANCELLED, null, null);
+        return ticket.state;
+    }
+
+    // for tests: matches what is queued right now, in batches, on the calling thread
+    int matchQueued() {
+        int batches = 0;
+        List<Ticket> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            match(batch);
+            batch.clear();
+            batches++;
+        }
+        return batches;
+    }
+
+    private void run() {
+        List<Ticket> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Ticket first = queue.poll(1, TimeUnit.SECONDS);
+                purgeSettled();
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                if (queue.size() < batchSize - 1) {
+                    TimeUnit.NANOSECONDS.sleep(batchWindow.toNanos()); // let the rest of a burst arrive
+                }
+                queue.drainTo(batch, batchSize - 1);
+                match(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Matchmaking batch failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // The batch holds the locks of the games it may seat users in (GameLockManager.withLocks) until
+    // it has committed, as every other writer of a game does, so its events reach the feed in
+    // commit order with theirs. Games it creates are nobody else's until it commits.
+    private void match(List<Ticket> batch) {
+        batchSizes.record(batch.size());
+        int minPlayers = batch.stream().mapToInt(ticket -> ticket.minPlayers).min().orElseThrow();
+        int maxPlayers = batch.stream().mapToInt(ticket -> ticket.maxPlayers).max().orElseThrow();
+        Plan plan;
+        try {
+            List<Long> candidates = gameRepository.findIdsWithFreeSeats(Game.GameStatus.SIGNUP, minPlayers, maxPlayers,
+                    PageRequest.of(0, batch.size() * GAMES_PER_TICKET));
+            plan = gameLocks.withLocks(candidates, () -> transactionTemplate.execute(
+                    status -> seat(batch, candidates, minPlayers, maxPlayers)));
+        } catch (RuntimeException e) {
+            log.warn("Matching {} tickets failed, queueing them again", batch.size(), e);
+            batch.forEach(ticket -> retry(ticket, "Could not be matched: " + e.getMessage()));
+            return;
+        }
+        if (lobbyEngine != null) {
+            plan.created.forEach((game, seated) -> lobbyEngine.track(game, seated));
+            plan.inEngine.forEach((ticket, gameId) -> {
+                switch (lobbyEngine.join(gameId, ticket.username)) {
+                    case JOINED, ALREADY_JOINED -> settle(ticket, QuickJoinTicket.Status.JOINED, gameId, null);
+                    default -> retry(ticket, "The game filled up"); // or left signup meanwhile
+                }
+            });
+        }
+        plan.settled.forEach(Runnable::run);
+    }
+
+    // Runs in the batch's transaction, with the candidates' locks held; what happens to each ticket
+    // is applied after commit. Candidates that filled up or left signup meanwhile drop out here.
+    private Plan seat(List<Ticket> batch, List<Long> candidates, int minPlayers, int maxPlayers) {
+        Plan plan = new Plan();
+        List<Game> open = new ArrayList<>(candidates.isEmpty() ? List.of()
+                : gameRepository.findForUpdateWithFreeSeats(candidates, Game.GameStatus.SIGNUP, minPlayers, maxPlayers));
+
+        Set<String> names = batch.stream().map(ticket -> ticket.username).collect(Collectors.toSet());
+        Map<String, User> users = userRepository.findByNameIn(names).stream()
+                .collect(Collectors.toMap(User::getName, Function.identity()));
+        Set<String> seated = new HashSet<>(); // "gameId/username"
+        if (!open.isEmpty()) {
+            for (LobbySeat seat : playerRepository.findSeatsOfUsersInGames(open.stream().map(Game::getUid).toList(), names)) {
+                seated.add(seat.gameId() + "/" + seat.username());
+            }
+        }
+
+        Map<Long, Integer> engineSeats = new LinkedHashMap<>(); // seats planned in engine games, not written here
+        List<Player> newPlayers = new ArrayList<>();
+        for (Ticket ticket : batch) {
+            User user = users.get(ticket.username);
+            if (user == null) {
+                plan.settled.add(() -> settle(ticket, QuickJoinTicket.Status.FAILED, null, "No user found with this name"));
+                continue;
+            }
+            Game game = open.stream()
+                    .filter(g -> g.getMinPlayers() >= ticket.minPlayers && g.getMaxPlayers() <= ticket.maxPlayers)
+                    .filter(g -> freeSeats(g, engineSeats) > 0 && !seated.contains(g.getUid() + "/" + ticket.username))
+                    .min(Comparator.comparingInt((Game g) -> freeSeats(g, engineSeats)).thenComparingLong(Game::getUid))
+                    .orElse(null);
+            if (game == null) {
+                game = newGame(ticket, user);
+                Player owner = newPlayer(user, game);
+                newPlayers.add(owner);
+                open.add(game);
+                plan.created.put(game, new ArrayList<>(List.of(owner)));
+                long gameId = game.getUid();
+                plan.settled.add(() -> settle(ticket, QuickJoinTicket.Status.CREATED, gameId, null));
+            } else if (lobbyEngine != null && lobbyEngine.tracks(game.getUid())) {
+                engineSeats.merge(game.getUid(), 1, Integer::sum);
+                plan.inEngine.put(ticket, game.getUid());
+            } else {
+                Player player = newPlayer(user, game);
+                newPlayers.add(player);
+                game.setPlayerCount(game.getPlayerCount() + 1); // the version check at commit guards it, as in joinGame
+                Optional.ofNullable(plan.created.get(game)).ifPresent(roster -> roster.add(player));
+                lobbyFeed.publish(LobbyEvent.Type.PLAYER_JOINED, game, user.getName()); // sent once we commit
+                long gameId = game.getUid();
+                plan.settled.add(() -> settle(ticket, QuickJoinTicket.Status.JOINED, gameId, null));
+            }
+            seated.add(game.getUid() + "/" + ticket.username);
+        }
+        playerRepository.saveAll(newPlayers);
+        return plan;
+    }
+
+    private Game newGame(Ticket ticket, User owner) {
+        Game game = new Game();
+        game.nameAfterId("Quick match"); // "Quick match <uid>", so names stay unique, as createGame expects
+        game.setMinPlayers(ticket.minPlayers);
+        game.setMaxPlayers(ticket.maxPlayers);
+        game.setOwner(owner.getName());
+        game.setStatus(Game.GameStatus.SIGNUP);
+        game.setPlayerCount(1); // the owner's seat
+        gameRepository.save(game); // takes an id from the sequence; the row goes in at commit
+        lobbyFeed.publish(LobbyEvent.Type.GAME_CREATED, game, owner.getName());
+        return game;
+    }
+
+    private Player newPlayer(User user, Game game) {
+        Player player = new Player();
+        player.setName(user.getName());
+        player.setUser(user);
+        player.setGame(game);
+        return player;
+    }
+
+    private static int freeSeats(Game game, Map<Long, Integer> engineSeats) {
+        return game.getMaxPlayers() - game.getPlayerCount() - engineSeats.getOrDefault(game.getUid(), 0);
+    }
+
+    private void retry(Ticket ticket, String reason) {
+        if (++ticket.attempts >= MAX_ATTEMPTS) {
+            settle(ticket, QuickJoinTicket.Status.FAILED, null, reason);
+        } else {
+            queue.add(ticket); // keeps its place: ordered by when it was first queued
+        }
+    }
+
+    private void settle(Ticket ticket, QuickJoinTicket.Status status, Long gameId, String message) {
+        ticket.state = new QuickJoinTicket(ticket.id, ticket.username, ticket.minPlayers, ticket.maxPlayers,
+                status, gameId, message);
+        ticket.settledAt = System.nanoTime();
+        waiting.remove(ticket.username, ticket);
+        Timer.builder("lobby.matchmaking.wait")
+                .tag("result", status.name().toLowerCase())
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(ticket.settledAt - ticket.enqueuedAt, TimeUnit.NANOSECONDS);
+    }
+
+    private void purgeSettled() {
+        long now = System.nanoTime();
+        if (now - lastPurge < PURGE_INTERVAL_NANOS) {
+            return;
+        }
+        lastPurge = now;
+        tickets.values().removeIf(ticket -> ticket.state.status() != QuickJoinTicket.Status.WAITING
+                && now - ticket.settledAt > ticketTtl.toNanos());
+    }
+
+    private static final class Ticket {
+        final long id;
+        final String username;
+        final int minPlayers;
+        final int maxPlayers;
+        final long enqueuedAt = System.nanoTime();
+        int attempts;                    // matcher thread only
+        volatile QuickJoinTicket state;  // what pollers see
+        volatile long settledAt;
+
+        Ticket(long id, String username, int minPlayers, int maxPlayers) {
+            this.id = id;
+            this.username = username;
+            this.minPlayers = minPlayers;
+            this.maxPlayers = maxPlayers;
+            this.state = new QuickJoinTicket(id, username, minPlayers, maxPlayers, QuickJoinTicket.Status.WAITING, null, null);
+        }
+    }
+
+    // the outcome of a batch, applied once its transaction committed
+    private static final class Plan {
+        final List<Runnable> settled = new ArrayList<>();
+        final Map<Game, List<Player>> created = new LinkedHashMap<>(); // new games and who sits in them
+        final Map<Ticket, Long> inEngine = new LinkedHashMap<>();      // seats to take through the engine
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.accessing_data_rest.service;
+
+import com.example.accessing_data_rest.dto.LobbyEvent;
+import com.example.accessing_data_rest.dto.PlayerCountDrift;
+import com.example.accessing_data_rest.repositories.GameRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+// Game.playerCount is a denormalized copy of "how many Player rows does this game have".
+// Joins and leaves keep it in step in the same transaction, and capacity checks and
+// listings trust it. This job double-checks it against the Player table now and then
+// and repairs any game that drifted (rows written by hand, older data, bugs).
+@Component
+public class PlayerCountReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(PlayerCountReconciler.class);
+
+    @Autowired
+    private GameRepository gameRepository;
+
+    @Autowired
+    private GameLockManager gameLocks;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private LobbyFeed lobbyFeed;
+
+    @Scheduled(initialDelayString = "${lobby.player-count.reconcile-initial-delay:30s}",
+               fixedDelayString = "${lobby.player-count.reconcile-interval:5m}")
+    public int reconcile() {
+        List<PlayerCountDrift> drifts = gameRepository.findPlayerCountDrift();
+        for (PlayerCountDrift drift : drifts) {
+            log.warn("Game {} says {} players but has {} Player rows, recounting",
+                    drift.gameId(), drift.playerCount(), drift.actualPlayers());
+            // recount under the game's lock and from inside the UPDATE itself,
+            // so a join that lands meanwhile is counted too; then announce the repaired row,
+            // so the search index and the event log's view get the count (and version) as well
+            gameLocks.withLock(drift.gameId(), () -> transactionTemplate.execute(status -> {
+                gameRepository.recountPlayers(drift.gameId());
+                gameRepository.findSavedByUid(drift.gameId())
+                        .ifPresent(game -> lobbyFeed.publish(LobbyEvent.Type.STATUS_CHANGED, game, null)); // sent at commit
+                return null;
+            }));
+        }
+        return drifts.size();
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.accessing_data_rest.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+// Ids for player rows inserted past Hibernate (LobbyWriteBehind, JdbcLobbyStore), from
+// player_seq in blocks of lobby.id.allocation-size (pooled-lo, like Hibernate does for the
+// same sequence): one sequence call per block, the rest handed out from memory.
+//
+// Guarded by a ReentrantLock, not by synchronized: fetching the next block is a query, and a
+// monitor held across it would pin a virtual thread.
+@Component
+public class PlayerIdAllocator {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final int allocationSize;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // guarded by lock
+    private long nextId;   // next id of the current block
+    private long blockEnd; // first id after the current block
+
+    public PlayerIdAllocator(@Value("${spring.jpa.properties.lobby.id.allocation-size:50}") int allocationSize) {
+        this.allocationSize = allocationSize;
+    }
+
+    public long next() {
+        lock.lock();
+        try {
+            if (nextId == blockEnd) {
+                nextId = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR player_seq", Long.class);
+                blockEnd = nextId + allocationSize;
+            }
+            return nextId++;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.example.accessing_data_rest.service;
 
+import com.example.accessing_data_rest.dto.BulkJoinResult;
+import com.example.accessing_data_rest.dto.GameSummary;
+import com.example.accessing_data_rest.dto.LobbyEvent;
 import com.example.accessing_data_rest.model.Player; // NB: unlike GameService and UserService, PlayerService imports both
 import com.example.accessing_data_rest.model.User;   // User and Game models and repos since it is the connecting layer 
 import com.example.accessing_data_rest.model.Game;   // between the two. See illustration in Assignment 7a pdf
@@ -7,11 +10,20 @@ import com.example.accessing_data_rest.repositories.PlayerRepository;
 import com.example.accessing_data_rest.repositories.UserRepository;
 import com.example.accessing_data_rest.repositories.GameRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Service
 public class PlayerService {
@@ -26,7 +38,18 @@ public class PlayerService {
     private GameRepository gameRepository;
 
     @Autowired
-    private GameService gameService;
+    private LobbyFeed lobbyFeed;
+
+    @Autowired
+    private GameLockManager gameLocks;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired(required = false)
+    private LobbyEngine lobbyEngine; // only with lobby.engine.enabled=true, see GameService
+
+    private static final int MAX_BULK_JOIN = 1000; // users per bulk join request
 
     public List<Player> getAllPlayers() {
         List<Player> players = new ArrayList<>();
@@ -38,64 +61,190 @@ public class PlayerService {
         return playerRepository.findByName(name);
     }
 
-    @Transactional // = either implement all or nothing in DB
+    // Joins run under the game's lock (GameLockManager), in a transaction of their own (= either
+    // implement all or nothing in DB) that commits before the lock is let go, so the lobby feed gets
+    // each game's joins in commit order, as with GameService's changes. Games in the lobby engine are
+    // joined there, before the lock is taken: LobbyEngine.exclusive takes the two the other way round.
+    // A version conflict at commit (a write that skipped the lock, like LobbyWriteBehind's batches)
+    // is passed on as is, for a 409.
     public void createPlayerFromIds(String name, Long userId, Long gameId) {
         try {
             // CHECKS
             User user = userRepository.findById(userId) // user exists
                     .orElseThrow(() -> new IllegalStateException("User not found with ID: " + userId));
-            
+
+            if (lobbyEngine != null && joinInEngine(gameId, user)) { // the engine seats them (under their user name)
+                return;
+            }
+
+            Player player = new Player();  // sets player info
+            player.setName(name);
+            takeSeat(gameId, user, player);
+        } catch (IllegalStateException | OptimisticLockingFailureException e) {
+            throw e; // no special handling
+        } catch (DataIntegrityViolationException e) { // lost a race: uk_player_user_game said no at commit
+            throw new IllegalStateException("You have already joined this game");
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to create player: " + e.getMessage());
+        }
+    }
+
+    public Player createPlayer(Player player) {
+        User user = userRepository.findById(player.getUser().getUid()) //  user exists
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        long gameId = player.getGame().getUid();
+
+        if (lobbyEngine != null && joinInEngine(gameId, user)) {
+            return lobbyEngine.snapshot(gameId).stream() // the seat as the engine has it
+                    .flatMap(g -> g.getPlayers().stream())
+                    .filter(p -> p.getName().equals(user.getName()))
+                    .findFirst()
+                    .orElse(player);
+        }
+
+        try {
+            return takeSeat(gameId, user, player);
+        } catch (DataIntegrityViolationException e) { // lost a race: uk_player_user_game said no at commit
+            throw new IllegalStateException("You have already joined this game");
+        }
+    }
+
+    // The seat is checked (signup, room, not joined yet) and taken on the game as read under the
+    // lock, so two joins can't both pass the checks on the same free seat.
+    private Player takeSeat(long gameId, User user, Player player) {
+        return gameLocks.withLock(gameId, () -> transactionTemplate.execute(status -> { // player row and seat count change together
             Game game = gameRepository.findById(gameId) // game exists
                     .orElseThrow(() -> new IllegalStateException("Game not found with ID: " + gameId));
-            
-            List<Player> existingPlayers = playerRepository.findByUserUid(userId); // already joined
-            boolean alreadyJoined = existingPlayers.stream() 
-                    .anyMatch(p -> p.getGame() != null && p.getGame().getUid() == gameId);
-            if (alreadyJoined) {
+
+            if (playerRepository.existsByUserUidAndGameUid(user.getUid(), gameId)) { // already joined (the owner too)
                 throw new IllegalStateException("You have already joined this game");
             }
 
-            if (game.getStatus() != Game.GameStatus.SIGNUP) { // signup phase  
+            if (game.getStatus() != Game.GameStatus.SIGNUP) { // signup phase
                 throw new IllegalStateException("This game is not accepting new players at the moment");
             }
 
-            if (game.getPlayers() != null && game.getPlayers().size() >= game.getMaxPlayers()) { // is full
+            if (game.getPlayerCount() >= game.getMaxPlayers()) { // is full
                 throw new IllegalStateException("This game is already full");
             }
 
-            Player player = new Player();  // sets player info
-            player.setName(name);
-            player.setUser(user);
+            player.setUser(user); // set relationship
             player.setGame(game);
-            
+
             if (game.getPlayers() == null) {
                 game.setPlayers(new ArrayList<>()); // sets player list
             }
-            
+
             game.getPlayers().add(player); // adds players
-            playerRepository.save(player);
+            game.setPlayerCount(game.getPlayerCount() + 1); // takes the seat; Game.version still catches writers without the lock
+            Player saved = playerRepository.save(player);
             gameRepository.save(game);
-        } catch (IllegalStateException e) {
-            throw e; // no special handling
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to create player: " + e.getMessage());
+            lobbyFeed.publish(LobbyEvent.Type.PLAYER_JOINED, game, user.getName()); // sent once we commit
+            return saved;
+        }));
+    }
+
+    // Signs many users into one game in a single transaction, for organizers seeding a tournament.
+    // Users are looked up with one query per list, members with one more, seats are counted once
+    // under a row lock, and the new players go in as JDBC batches (hibernate.jdbc.batch_size).
+    // Every user gets a result, in the order asked; only a closed game or bad input fails the call.
+    // Under the game's lock, as createPlayerFromIds, unless the engine has the game.
+    public List<BulkJoinResult> joinGameBulk(Long gameId, List<String> usernames, List<Long> userIds) {
+        List<String> names = usernames != null ? usernames : List.of();
+        List<Long> ids = userIds != null ? userIds : List.of();
+        if (names.isEmpty() && ids.isEmpty()) {
+            throw new IllegalStateException("No users to join");
+        }
+        if (names.size() + ids.size() > MAX_BULK_JOIN) {
+            throw new IllegalStateException("At most " + MAX_BULK_JOIN + " users can join at once");
         }
+
+        boolean inEngine = lobbyEngine != null && lobbyEngine.tracks(gameId); // then seats are taken in memory
+        Supplier<List<BulkJoinResult>> join = () -> transactionTemplate.execute(status -> joinGameBulk(gameId, names, ids, inEngine));
+        return inEngine ? join.get() : gameLocks.withLock(gameId, join);
     }
 
-    public Player createPlayer(Player player) {
-        User user = userRepository.findById(player.getUser().getUid()) //  user exists
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        Game game = gameRepository.findById(player.getGame().getUid()) // game exists
-                .orElseThrow(() -> new RuntimeException("Game not found"));
+    private List<BulkJoinResult> joinGameBulk(long gameId, List<String> names, List<Long> ids, boolean inEngine) {
+        Game game = inEngine ? null : gameRepository.findForUpdateByUid(gameId) // game exists, and is ours until commit
+                .orElseThrow(() -> new IllegalStateException("Game not found with ID: " + gameId));
+        if (game != null && game.getStatus() != Game.GameStatus.SIGNUP) { // signup phase
+            throw new IllegalStateException("This game is not accepting new players at the moment");
+        }
+
+        Map<String, User> byName = names.isEmpty() ? Map.of() : userRepository.findByNameIn(names).stream()
+                .collect(Collectors.toMap(User::getName, Function.identity()));
+        Map<Long, User> byId = new HashMap<>();
+        userRepository.findAllById(ids).forEach(user -> byId.put(user.getUid(), user));
 
-        if (!gameService.canJoinGame(game.getUid(), user.getName())) { // can join game
-            throw new RuntimeException("Cannot join game - game is not open, user is creator, or game is full");
+        Set<String> known = new HashSet<>(byName.keySet());
+        byId.values().forEach(user -> known.add(user.getName()));
+        Set<String> members = inEngine || known.isEmpty() ? new HashSet<>()
+                : new HashSet<>(playerRepository.findMemberNames(gameId, known));
+
+        List<Player> newPlayers = new ArrayList<>();
+        Function<User, BulkJoinResult.Status> seating = inEngine
+                ? user -> seatInEngine(user, gameId)
+                : user -> seat(user, game, members, newPlayers);
+        List<BulkJoinResult> results = new ArrayList<>();
+        for (String name : names) {
+            User user = byName.get(name);
+            results.add(new BulkJoinResult(name, user != null ? user.getUid() : null, seating.apply(user)));
+        }
+        for (Long id : ids) {
+            User user = byId.get(id);
+            results.add(new BulkJoinResult(user != null ? user.getName() : null, id, seating.apply(user)));
         }
-        
-        player.setUser(user); // set relationship
-        player.setGame(game);
 
-        return playerRepository.save(player); // finally, saves player
+        if (!newPlayers.isEmpty()) {
+            playerRepository.saveAll(newPlayers);
+            game.setPlayerCount(game.getPlayerCount() + newPlayers.size());
+            gameRepository.save(game);
+            for (Player player : newPlayers) {
+                lobbyFeed.publish(LobbyEvent.Type.PLAYER_JOINED, game, player.getName()); // sent once we commit
+            }
+        }
+        return results;
+    }
+
+    private BulkJoinResult.Status seatInEngine(User user, long gameId) {
+        if (user == null) {
+            return BulkJoinResult.Status.NO_SUCH_USER;
+        }
+        return switch (lobbyEngine.join(gameId, user.getName())) {
+            case JOINED -> BulkJoinResult.Status.JOINED;
+            case ALREADY_JOINED -> BulkJoinResult.Status.ALREADY_JOINED;
+            case FULL -> BulkJoinResult.Status.GAME_FULL;
+            default -> throw new IllegalStateException("This game is not accepting new players at the moment"); // left signup meanwhile
+        };
+    }
+
+    // true if the engine holds the game and seated the user; false if the game isn't in the engine
+    private boolean joinInEngine(long gameId, User user) {
+        return switch (lobbyEngine.join(gameId, user.getName())) {
+            case JOINED -> true;
+            case ALREADY_JOINED -> throw new IllegalStateException("You have already joined this game");
+            case FULL -> throw new IllegalStateException("This game is already full");
+            default -> false;
+        };
+    }
+
+    private BulkJoinResult.Status seat(User user, Game game, Set<String> members, List<Player> newPlayers) {
+        if (user == null) {
+            return BulkJoinResult.Status.NO_SUCH_USER;
+        }
+        if (members.contains(user.getName())) { // already in, or earlier in this same request
+            return BulkJoinResult.Status.ALREADY_JOINED;
+        }
+        if (game.getPlayerCount() + newPlayers.size() >= game.getMaxPlayers()) {
+            return BulkJoinResult.Status.GAME_FULL;
+        }
+        members.add(user.getName());
+        Player player = new Player();
+        player.setName(user.getName());
+        player.setUser(user);
+        player.setGame(game);
+        newPlayers.add(player);
+        return BulkJoinResult.Status.JOINED;
     }
 
     // NB: Might seem random and like it's a getter that's supposed to be in Player.java,
@@ -105,4 +254,9 @@ public class PlayerService {
     public List<Player> getPlayersByUser(Long userId) {
         return playerRepository.findByUserUid(userId);
     }
+
+    // the games a user is in, as lobby summaries (status, seats), without loading any entity
+    public List<GameSummary> getGamesByUser(Long userId) {
+        return playerRepository.findGameSummariesByUserUid(userId);
+    }
 } 
\ No newline at end of file
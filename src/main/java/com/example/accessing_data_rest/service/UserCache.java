@@ -0,0 +1,64 @@
+package com.example.accessing_data_rest.service;
+
+import com.example.accessing_data_rest.model.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+// name -> User, in front of UserRepository. Sign-in, sign-out and game creation look
+// users up by name all the time, so the hot ones are served from memory. Bounded: once
+// full, names that haven't been used lately are evicted, and entries also expire after a
+// while without use.
+// Only hits are cached, so a name that gets registered later is never stuck as "unknown".
+// Users are only ever created, by UserService, which puts them here; Data REST doesn't
+// export user updates or deletes (see UserRepository). Code that changes a user's row
+// any other way must evict its old name.
+@Component
+public class UserCache {
+
+    private final Cache<String, User> byName;
+
+    public UserCache(@Value("${lobby.user-cache.max-size:10000}") long maxSize,
+                     @Value("${lobby.user-cache.expire-after-access:30m}") Duration expireAfterAccess) {
+        this.byName = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(expireAfterAccess)
+                .build();
+    }
+
+    // Looks the name up in the cache, and only on a miss asks the loader (the repository).
+    // The load runs outside the cache: Caffeine's get(name, loader) would run it inside a
+    // ConcurrentHashMap bin lock (a monitor), pinning a virtual thread for the whole query.
+    // Concurrent misses for the same name may each load it; they load the same row.
+    public Optional<User> get(String name, Function<String, Optional<User>> loader) {
+        User cached = byName.getIfPresent(name);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        return loader.apply(name).map(this::put);
+    }
+
+    public User put(User user) {
+        User snapshot = snapshot(user);
+        byName.put(snapshot.getName(), snapshot);
+        return snapshot;
+    }
+
+    public void evict(String name) {
+        byName.invalidate(name);
+    }
+
+    // We keep a detached copy with just id and name. The entity's lazy players list
+    // can't be read once its session is gone, and callers only need who the user is.
+    private static User snapshot(User user) {
+        User copy = new User();
+        copy.setUid(user.getUid());
+        copy.setName(user.getName());
+        return copy;
+    }
+}
@@ -1,10 +1,13 @@
 package com.example.accessing_data_rest.service;
 
+import com.example.accessing_data_rest.dto.UserSummary;
 import com.example.accessing_data_rest.model.User;
 import com.example.accessing_data_rest.repositories.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import java.util.List;
+import java.util.Optional;
 
 @Service
 public class UserService {
@@ -12,16 +15,18 @@ public class UserService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private LobbyStore lobbyStore;
+
     public List<User> getUsers() {
         return (List<User>) userRepository.findAll(); // gets all users
     }
 
-    public List<User> searchUsers(String name) {
-        List<User> users = userRepository.findByName(name);
-        for (User u : users) {
-            u.setPlayers(null);  // Strip players to avoid nested deserialization
-        }
-        return users;
+    public List<UserSummary> searchUsers(String name) {
+        return userRepository.findSummariesByName(name); // id and name only, no players graph
     }
 
     public User registerUser(String name) {
@@ -29,14 +34,20 @@ public class UserService {
             throw new IllegalStateException("Username cannot be empty");
         }
 
-        List<User> existing = userRepository.findByName(name);
-        if (!existing.isEmpty()) { // user already exists
+        if (findUser(name).isPresent()) { // user already exists
             throw new IllegalStateException("A user with this name already exists");
         }
 
         User user = new User(); // finally, saves user
         user.setName(name);
-        return userRepository.save(user);
+        User saved;
+        try {
+            saved = userRepository.save(user);
+        } catch (DataIntegrityViolationException e) { // lost a race: the unique index on name said no
+            throw new IllegalStateException("A user with this name already exists");
+        }
+        userCache.put(saved);
+        return saved;
     }
 
     public User signIn(String name) { 
@@ -44,11 +55,8 @@ public class UserService {
             throw new IllegalStateException("Username cannot be empty");
         }
 
-        List<User> users = userRepository.findByName(name);
-        if (users.isEmpty()) { // no user found
-            throw new IllegalStateException("No user found with this name");
-        }
-        return users.get(0);
+        return findUser(name) // no user found
+                .orElseThrow(() -> new IllegalStateException("No user found with this name"));
     }
 
     public void signOut(String name) {
@@ -56,10 +64,14 @@ public class UserService {
             throw new IllegalStateException("Username cannot be empty");
         }
 
-        List<User> users = userRepository.findByName(name);
-        if (users.isEmpty()) { // no user found
+        if (findUser(name).isEmpty()) { // no user found
             throw new IllegalStateException("No user found with this name");
         }
     }
 
-} 
\ No newline at end of file
+    // cache first, the DB (unique index on name, through the LobbyStore) only on a miss
+    private Optional<User> findUser(String name) {
+        return userCache.get(name, lobbyStore::findUser);
+    }
+
+}
@@ -2,8 +2,10 @@ package com.example.accessing_data_rest;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
 
 @SpringBootTest
+@ActiveProfiles("test") // in-memory DB, see src/test/resources/application-test.properties
 class AccessingDataRestApplicationTests {
 
 	@Test
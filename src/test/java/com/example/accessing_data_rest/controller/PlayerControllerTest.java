@@ -0,0 +1,56 @@
+package com.example.accessing_data_rest.controller;
+
+import com.example.accessing_data_rest.model.Game;
+import com.example.accessing_data_rest.service.PlayerService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PlayerControllerTest {
+
+    @Mock
+    private PlayerService playerService;
+
+    @InjectMocks
+    private PlayerController playerController;
+
+    @Test
+    void testSignUpToGameAnswersConflictWhenTheGameChanged() {
+        // Arrange
+        doThrow(new ObjectOptimisticLockingFailureException(Game.class, 7L))
+                .when(playerService).createPlayerFromIds("New Player", 1L, 7L);
+
+        // Act
+        ResponseEntity<?> response = playerController.signUpToGame(
+                Map.of("name", "New Player", "user", "/user/1", "game", "/game/7"));
+
+        // Assert
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+    }
+
+    @Test
+    void testSignUpToGameAnswersBadRequestForAFullGame() {
+        // Arrange
+        doThrow(new IllegalStateException("This game is already full"))
+                .when(playerService).createPlayerFromIds("New Player", 1L, 7L);
+
+        // Act
+        ResponseEntity<?> response = playerController.signUpToGame(
+                Map.of("name", "New Player", "user", "/user/1", "game", "/game/7"));
+
+        // Assert
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals(Map.of("message", "This game is already full"), response.getBody());
+    }
+}
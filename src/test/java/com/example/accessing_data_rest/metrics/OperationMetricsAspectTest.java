@@ -0,0 +1,55 @@
+package com.example.accessing_data_rest.metrics;
+
+import com.example.accessing_data_rest.repositories.UserRepository;
+import com.example.accessing_data_rest.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class OperationMetricsAspectTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private UserService userService;
+
+    @BeforeEach
+    void setUp() {
+        UserService target = new UserService();
+        ReflectionTestUtils.setField(target, "userRepository", userRepository);
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.addAspect(new OperationMetricsAspect(registry));
+        userService = factory.getProxy();
+    }
+
+    @Test
+    void testServiceCallsAreTimedByOutcome() {
+        // Arrange
+        when(userRepository.findSummariesByName("alice")).thenReturn(List.of());
+        when(userRepository.findAll()).thenThrow(new RuntimeException("db down"));
+
+        // Act
+        userService.searchUsers("alice");
+        userService.searchUsers("alice");
+        assertThrows(IllegalStateException.class, () -> userService.signIn(" "));
+        assertThrows(RuntimeException.class, () -> userService.getUsers());
+
+        // Assert
+        assertEquals(2, count("searchUsers", "success"));
+        assertEquals(1, count("signIn", "illegal_state"));
+        assertEquals(1, count("getUsers", "error"));
+    }
+
+    private long count(String method, String outcome) {
+        return registry.get(OperationMetricsAspect.SERVICE_TIMER)
+                .tags("class", "UserService", "method", method, "outcome", outcome)
+                .timer()
+                .count();
+    }
+}
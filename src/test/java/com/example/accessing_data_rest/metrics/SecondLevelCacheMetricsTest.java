@@ -0,0 +1,43 @@
+package com.example.accessing_data_rest.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SecondLevelCacheMetricsTest {
+
+    private static final String GAME_REGION = "com.example.accessing_data_rest.model.Game";
+
+    @Test
+    void testHitsMissesAndPutsPerRegion() {
+        // Arrange
+        Statistics statistics = mock(Statistics.class);
+        CacheRegionStatistics game = mock(CacheRegionStatistics.class);
+        when(statistics.getSecondLevelCacheRegionNames()).thenReturn(new String[] {GAME_REGION});
+        when(statistics.getCacheRegionStatistics(GAME_REGION)).thenReturn(game);
+        when(game.getHitCount()).thenReturn(40L);
+        when(game.getMissCount()).thenReturn(2L);
+        when(game.getPutCount()).thenReturn(3L);
+        SessionFactory sessionFactory = mock(SessionFactory.class);
+        when(sessionFactory.getStatistics()).thenReturn(statistics);
+        EntityManagerFactory entityManagerFactory = mock(EntityManagerFactory.class);
+        when(entityManagerFactory.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        // Act
+        new SecondLevelCacheMetrics(entityManagerFactory).bindTo(registry);
+
+        // Assert: tagged with the short region name, read live from the statistics
+        assertEquals(40.0, registry.get("lobby.cache.requests").tags("region", "Game", "result", "hit").functionCounter().count());
+        assertEquals(2.0, registry.get("lobby.cache.requests").tags("region", "Game", "result", "miss").functionCounter().count());
+        assertEquals(3.0, registry.get("lobby.cache.puts").tag("region", "Game").functionCounter().count());
+        when(game.getHitCount()).thenReturn(41L);
+        assertEquals(41.0, registry.get("lobby.cache.requests").tags("region", "Game", "result", "hit").functionCounter().count());
+    }
+}
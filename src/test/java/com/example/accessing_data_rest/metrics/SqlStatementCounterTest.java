@@ -0,0 +1,33 @@
+package com.example.accessing_data_rest.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlStatementCounterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final SqlStatementCounter counter = new SqlStatementCounter(registry);
+
+    @Test
+    void testCountsByKindAndPerThread() {
+        // Arrange
+        counter.inspect("select g1_0.game_id from game g1_0"); // before begin(): global count only
+
+        // Act
+        counter.begin();
+        String sql = counter.inspect("  update game set player_count=? where game_id=?");
+        counter.inspect("insert into player (name) values (?)");
+        counter.inspect("SELECT 1");
+        int perRequest = counter.end();
+
+        // Assert
+        assertEquals("  update game set player_count=? where game_id=?", sql); // passed through unchanged
+        assertEquals(3, perRequest);
+        assertEquals(0, counter.end()); // nothing left behind on the thread
+        assertEquals(2.0, registry.get("lobby.sql.statements").tag("kind", "select").counter().count());
+        assertEquals(1.0, registry.get("lobby.sql.statements").tag("kind", "update").counter().count());
+        assertEquals(1.0, registry.get("lobby.sql.statements").tag("kind", "insert").counter().count());
+    }
+}
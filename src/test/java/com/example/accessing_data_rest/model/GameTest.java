@@ -23,6 +23,17 @@ class GameTest {
         assertEquals(Game.GameStatus.SIGNUP, game.getStatus());
     }
 
+    @Test
+    void testGameNamedAfterItsIdOnPersist() {
+        Game game = new Game();
+        game.nameAfterId("Quick match");
+        game.setUid(42); // as the sequence hands it out, before @PrePersist runs
+
+        game.appendUidToName();
+
+        assertEquals("Quick match 42", game.getName());
+    }
+
     @Test
     void testGamePlayers() {
         Game game = new Game();
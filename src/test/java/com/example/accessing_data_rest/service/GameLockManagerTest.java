@@ -0,0 +1,85 @@
+package com.example.accessing_data_rest.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameLockManagerTest {
+
+    private final GameLockManager gameLocks = new GameLockManager();
+
+    @Test
+    void testSameGameIsSerialized() throws Exception {
+        // Arrange
+        int threads = 8;
+        int rounds = 1_000;
+        int[] counter = {0}; // deliberately not thread-safe, only the lock protects it
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+        // Act
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < rounds; i++) {
+                    gameLocks.withLock(1L, () -> counter[0]++);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        // Assert
+        assertEquals(threads * rounds, counter[0]);
+        assertEquals(0, gameLocks.activeLocks());
+    }
+
+    @Test
+    void testDifferentGamesDoNotBlockEachOther() throws Exception {
+        // Arrange
+        CountDownLatch game1Locked = new CountDownLatch(1);
+        CountDownLatch releaseGame1 = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+
+        // Act: hold the lock of game 1 on another thread ...
+        Future<?> holder = pool.submit(() -> gameLocks.withLock(1L, () -> {
+            game1Locked.countDown();
+            try {
+                return releaseGame1.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+        assertTrue(game1Locked.await(10, TimeUnit.SECONDS));
+
+        // ... and game 2 can still be changed right away
+        String result = gameLocks.withLock(2L, () -> "changed");
+
+        // Assert
+        assertEquals("changed", result);
+        assertEquals(1, gameLocks.activeLocks());
+        releaseGame1.countDown();
+        holder.get(10, TimeUnit.SECONDS);
+        pool.shutdown();
+        assertEquals(0, gameLocks.activeLocks());
+    }
+
+    @Test
+    void testLockIsReleasedWhenActionThrows() {
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> gameLocks.withLock(1L, () -> {
+            throw new IllegalStateException("Game is not in signup phase");
+        }));
+        assertEquals(0, gameLocks.activeLocks());
+        assertEquals("again", gameLocks.withLock(1L, () -> "again"));
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.accessing_data_rest.service;
+
+import com.example.accessing_data_rest.dto.LobbyEvent;
+import com.example.accessing_data_rest.model.Game;
+import com.example.accessing_data_rest.repositories.GameRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GameReaperTest {
+
+    @Mock
+    private GameRepository gameRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
+    @Spy
+    private GameLockManager gameLocks = new GameLockManager();
+
+    @Mock
+    private EntityCacheEvictor cacheEvictor;
+
+    @Mock
+    private LobbyFeed lobbyFeed;
+
+    @InjectMocks
+    private GameReaper reaper = new GameReaper(2, Duration.ofHours(24), Duration.ofHours(1));
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testArchivesIdleGamesInBatches() {
+        // Arrange: three finished games, two per batch; no idle signup games
+        when(gameRepository.findIdleGameIds(eq(Game.GameStatus.FINISHED), any(Instant.class), eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(1L, 2L));
+        when(gameRepository.findIdleGameIds(eq(Game.GameStatus.FINISHED), any(Instant.class), eq(2L), any(Pageable.class)))
+                .thenReturn(List.of(3L));
+        when(gameRepository.findIdleGameIds(eq(Game.GameStatus.SIGNUP), any(Instant.class), eq(0L), any(Pageable.class)))
+                .thenReturn(List.of());
+        when(jdbcTemplate.query(startsWith("SELECT game_id"), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(List.of(game(1L), game(2L)), List.of(game(3L)));
+        when(jdbcTemplate.queryForList(startsWith("SELECT player_id"), eq(Long.class), any(Object[].class)))
+                .thenReturn(List.of(10L, 20L), List.of(30L));
+
+        // Act
+        int archived = reaper.reap();
+
+        // Assert: each batch copied, then deleted, and the games evicted and announced
+        assertEquals(3, archived);
+        verify(transactionTemplate, times(2)).execute(any());
+        verify(jdbcTemplate, times(2)).update(startsWith("INSERT INTO archived_game"), any(Object[].class));
+        verify(jdbcTemplate, times(2)).update(startsWith("DELETE FROM game"), any(Object[].class));
+        verify(cacheEvictor, times(1)).evictGame(3L);
+        verify(cacheEvictor, times(1)).evictPlayer(30L);
+        verify(lobbyFeed, times(3)).publish(eq(LobbyEvent.Type.GAME_DELETED), any(Game.class), isNull());
+        verify(gameLocks, times(1)).withLocks(eq(List.of(1L, 2L)), any()); // announced before a later join can be
+        verify(gameLocks, times(1)).withLocks(eq(List.of(3L)), any());
+        assertEquals(0, gameLocks.activeLocks());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testGameTouchedSinceTheScanStays() {
+        // Arrange: the re-check under the row lock finds nothing idle any more
+        when(gameRepository.findIdleGameIds(any(), any(Instant.class), eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(), List.of(5L));
+        when(jdbcTemplate.query(startsWith("SELECT game_id"), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(List.of());
+
+        // Act
+        int archived = reaper.reap();
+
+        // Assert
+        assertEquals(0, archived);
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
+        verify(lobbyFeed, never()).publish(any(), any(), any());
+    }
+
+    private static Game game(long uid) {
+        Game game = new Game();
+        game.setUid(uid);
+        game.setStatus(Game.GameStatus.FINISHED);
+        return game;
+    }
+}
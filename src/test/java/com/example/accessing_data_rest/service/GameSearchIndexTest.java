@@ -0,0 +1,124 @@
+package com.example.accessing_data_rest.service;
+
+import com.example.accessing_data_rest.dto.GameSummary;
+import com.example.accessing_data_rest.dto.LobbyEvent;
+import com.example.accessing_data_rest.model.Game;
+import com.example.accessing_data_rest.repositories.GameRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GameSearchIndexTest {
+
+    private static final Pageable FIRST_PAGE = PageRequest.of(0, 10);
+
+    @Mock
+    private GameRepository gameRepository;
+
+    @Mock
+    private LobbyFeed lobbyFeed;
+
+    @InjectMocks
+    private GameSearchIndex searchIndex = new GameSearchIndex(0.3);
+
+    @BeforeEach
+    void setUp() {
+        when(gameRepository.findSummariesAfter(anyLong(), any(Pageable.class))).thenReturn(new SliceImpl<>(List.of(
+            new GameSummary(1L, "Friday Night Lobby", 2, 4, "ann", Game.GameStatus.SIGNUP, 1),
+            new GameSummary(2L, "lobby of legends", 2, 2, "bo", Game.GameStatus.SIGNUP, 2),  // full
+            new GameSummary(3L, "Chess Club", 2, 8, "cy", Game.GameStatus.ACTIVE, 3))));
+        searchIndex.load();
+    }
+
+    @Test
+    void testLoadsAndFollowsTheFeed() {
+        // Assert
+        assertEquals(3, searchIndex.size());
+        verify(lobbyFeed, times(1)).subscribe(searchIndex, null);
+    }
+
+    @Test
+    void testContainsIgnoresCaseAndFilters() {
+        // Act & Assert: in uid order
+        assertEquals(List.of(1L, 2L), uids(searchIndex.contains("LOBBY", null, 0, FIRST_PAGE)));
+        assertEquals(List.of(1L), uids(searchIndex.contains("lobby", Game.GameStatus.SIGNUP, 1, FIRST_PAGE)));
+        assertEquals(List.of(), uids(searchIndex.contains("lobby", Game.GameStatus.ACTIVE, 0, FIRST_PAGE)));
+        assertEquals(List.of(), uids(searchIndex.contains("bby f", null, 0, FIRST_PAGE))); // every trigram there, not in a row
+        assertThrows(IllegalStateException.class, () -> searchIndex.contains("lo", null, 0, FIRST_PAGE));
+    }
+
+    @Test
+    void testContainsPages() {
+        // Act
+        Slice<GameSummary> first = searchIndex.contains("lobby", null, 0, PageRequest.of(0, 1));
+        Slice<GameSummary> second = searchIndex.contains("lobby", null, 0, PageRequest.of(1, 1));
+
+        // Assert
+        assertEquals(List.of(1L), uids(first));
+        assertTrue(first.hasNext());
+        assertEquals(List.of(2L), uids(second));
+        assertFalse(second.hasNext());
+    }
+
+    @Test
+    void testFuzzyToleratesTyposBestFirst() {
+        // Act & Assert
+        assertEquals(List.of(3L), uids(searchIndex.fuzzy("chess clbu", null, 0, FIRST_PAGE)));
+        assertEquals(List.of(2L), uids(searchIndex.fuzzy("lobyb of legends", null, 0, FIRST_PAGE)));
+        assertEquals(List.of(2L, 1L), uids(searchIndex.fuzzy("night lobby of legends", null, 0, FIRST_PAGE))); // closer first
+        assertEquals(List.of(), uids(searchIndex.fuzzy("tournament", null, 0, FIRST_PAGE)));
+    }
+
+    @Test
+    void testEventsKeepItCurrent() {
+        // Act
+        searchIndex.onLobbyEvent(event(LobbyEvent.Type.GAME_CREATED, 4L, "Sunday Lobby", Game.GameStatus.SIGNUP, 1));
+        searchIndex.onLobbyEvent(event(LobbyEvent.Type.STATUS_CHANGED, 1L, "Friday Night Lobby", Game.GameStatus.ACTIVE, 1));
+        searchIndex.onLobbyEvent(event(LobbyEvent.Type.GAME_DELETED, 2L, "lobby of legends", Game.GameStatus.SIGNUP, 2));
+
+        // Assert
+        assertEquals(List.of(1L, 4L), uids(searchIndex.contains("lobby", null, 0, FIRST_PAGE)));
+        assertEquals(List.of(4L), uids(searchIndex.contains("lobby", Game.GameStatus.SIGNUP, 0, FIRST_PAGE)));
+        assertEquals(3, searchIndex.size());
+    }
+
+    @Test
+    void testManyDeletesCompact() {
+        // Arrange: enough games come and go to rebuild the posting lists
+        for (long id = 10; id < 3010; id++) {
+            searchIndex.onLobbyEvent(event(LobbyEvent.Type.GAME_CREATED, id, "Temp Lobby " + id, Game.GameStatus.SIGNUP, 1));
+        }
+
+        // Act
+        for (long id = 10; id < 3010; id++) {
+            searchIndex.onLobbyEvent(event(LobbyEvent.Type.GAME_DELETED, id, "Temp Lobby " + id, Game.GameStatus.SIGNUP, 1));
+        }
+
+        // Assert
+        assertEquals(List.of(1L, 2L), uids(searchIndex.contains("lobby", null, 0, FIRST_PAGE)));
+        assertEquals(3, searchIndex.size());
+    }
+
+    private static LobbyEvent event(LobbyEvent.Type type, long gameId, String name, Game.GameStatus status, int players) {
+        return new LobbyEvent(1, type, gameId, name, "owner", status, players, 2, 4, 1, "owner");
+    }
+
+    private static List<Long> uids(Slice<GameSummary> games) {
+        return games.getContent().stream().map(GameSummary::uid).toList();
+    }
+}
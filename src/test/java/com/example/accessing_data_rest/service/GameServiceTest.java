@@ -1,20 +1,35 @@
 package com.example.accessing_data_rest.service;
 
+import com.example.accessing_data_rest.dto.GameSummary;
+import com.example.accessing_data_rest.dto.LobbyEvent;
 import com.example.accessing_data_rest.model.Game;
 import com.example.accessing_data_rest.model.Player;
 import com.example.accessing_data_rest.model.User;
 import com.example.accessing_data_rest.repositories.GameRepository;
 import com.example.accessing_data_rest.repositories.PlayerRepository;
 import com.example.accessing_data_rest.repositories.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-
-import java.util.Arrays;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.LongStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -44,6 +59,31 @@ class GameServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private LobbyFeed lobbyFeed;
+
+    @Mock
+    private GameSearchIndex searchIndex;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private EntityCacheEvictor cacheEvictor;
+
+    /**
+     * {@code @Spy} wraps a real object. Joining and leaving run inside a {@code TransactionTemplate};
+     * backed by a mocked transaction manager it just runs the callback, which is all we need here.
+     */
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
+    @Spy
+    private GameLockManager gameLocks = new GameLockManager();
+
+    @Spy
+    private UserCache userCache = new UserCache(100, Duration.ofMinutes(1));
+
     /**
      * {@code @InjectMocks} creates an instance of the class and injects the mocks that are created
      * with the {@code @Mock} annotations into this instance.
@@ -57,46 +97,98 @@ class GameServiceTest {
     @InjectMocks
     private GameService gameService;
 
+    /**
+     * The default {@link LobbyStore}: a real {@link JpaLobbyStore}, with the mocked repositories
+     * injected into it ({@code @Spy} together with {@code @InjectMocks}). Mockito doesn't inject
+     * one class under test into another, so it is handed to the service in {@link #setUpStore()}.
+     */
+    @Spy
+    @InjectMocks
+    private JpaLobbyStore lobbyStore;
+
+    @BeforeEach
+    void setUpStore() {
+        ReflectionTestUtils.setField(gameService, "lobbyStore", lobbyStore);
+    }
+
+    @Test
+    void testGetOpenGamesPage() {
+        // Arrange
+        GameSummary openGame = new GameSummary(1L, "Open Game", 2, 4, "owner", Game.GameStatus.SIGNUP, 1);
+        Pageable pageable = PageRequest.of(1, 1, Sort.by("name"));
+        when(gameRepository.findSummariesByStatus(Game.GameStatus.SIGNUP, pageable))
+            .thenReturn(new SliceImpl<>(List.of(openGame), pageable, true));
+
+        // Act
+        Slice<GameSummary> page = gameService.getOpenGames(pageable);
+
+        // Assert
+        assertEquals(List.of(openGame), page.getContent());
+        assertTrue(page.hasNext());
+        verify(gameRepository, never()).findAll();
+    }
+
+    @Test
+    void testGetGamesAfterCursor() {
+        // Arrange
+        GameSummary game = new GameSummary(43L, "Game", 2, 4, "owner", Game.GameStatus.ACTIVE, 3);
+        Pageable firstPageByUid = PageRequest.of(0, 10, Sort.by("uid"));
+        when(gameRepository.findSummariesAfter(42L, firstPageByUid))
+            .thenReturn(new SliceImpl<>(List.of(game), firstPageByUid, false));
+
+        // Act
+        Slice<GameSummary> page = gameService.getGamesAfter(42L, 10);
+
+        // Assert
+        assertEquals(1, page.getNumberOfElements());
+        assertFalse(page.hasNext());
+        verify(gameRepository, times(1)).findSummariesAfter(42L, firstPageByUid);
+    }
+
     @Test
-    void testGetGames() {
+    void testSearchGamesReturnsSummaries() {
         // Arrange
-        Game game1 = new Game();
-        game1.setName("Game1");
-        Game game2 = new Game();
-        game2.setName("Game2");
-        List<Game> expectedGames = Arrays.asList(game1, game2);
-        when(gameRepository.findAll()).thenReturn(expectedGames);
+        GameSummary summary = new GameSummary(5L, "Lobby", 2, 4, "owner", Game.GameStatus.SIGNUP, 2);
+        Pageable byName = PageRequest.of(0, 20, Sort.by("name", "uid"));
+        when(gameRepository.findSummariesByName("Lobby", null, 0, byName)).thenReturn(new SliceImpl<>(List.of(summary)));
 
         // Act
-        List<Game> actualGames = gameService.getGames();
+        Slice<GameSummary> results = gameService.searchGames("Lobby", GameService.SearchMatch.EXACT, null, 0, PageRequest.of(0, 20));
 
         // Assert
-        assertEquals(expectedGames.size(), actualGames.size());
-        assertEquals(expectedGames, actualGames);
-        verify(gameRepository, times(1)).findAll();
+        assertEquals(List.of(summary), results.getContent());
+        verify(gameRepository, never()).findByName(anyString()); // no entities loaded or modified
     }
 
     @Test
-    void testGetOpenGames() {
+    void testSearchGamesByPrefixIsAnIndexRange() {
         // Arrange
-        Game openGame = new Game();
-        openGame.setName("Open Game");
-        openGame.setStatus(Game.GameStatus.SIGNUP);
+        Pageable byName = PageRequest.of(1, 20, Sort.by("name", "uid"));
+        when(gameRepository.findSummariesByNamePrefix("Lob", "Loc", Game.GameStatus.SIGNUP, 1, byName))
+            .thenReturn(new SliceImpl<>(List.of()));
 
-        Game closedGame = new Game();
-        closedGame.setName("Closed Game");
-        closedGame.setStatus(Game.GameStatus.ACTIVE);
+        // Act
+        gameService.searchGames("Lob", GameService.SearchMatch.PREFIX, Game.GameStatus.SIGNUP, 1, PageRequest.of(1, 20));
 
-        List<Game> allGames = Arrays.asList(openGame, closedGame);
-        when(gameRepository.findAll()).thenReturn(allGames);
+        // Assert
+        verify(gameRepository, times(1)).findSummariesByNamePrefix("Lob", "Loc", Game.GameStatus.SIGNUP, 1, byName);
+    }
+
+    @Test
+    void testSearchGamesContainsAndFuzzyUseTheIndex() {
+        // Arrange
+        Pageable page = PageRequest.of(0, 20);
+        when(searchIndex.contains("obb", null, 0, page)).thenReturn(new SliceImpl<>(List.of()));
+        when(searchIndex.fuzzy("Lobyb", null, 0, page)).thenReturn(new SliceImpl<>(List.of()));
 
         // Act
-        List<Game> openGames = gameService.getOpenGames();
+        gameService.searchGames("obb", GameService.SearchMatch.CONTAINS, null, 0, page);
+        gameService.searchGames("Lobyb", GameService.SearchMatch.FUZZY, null, 0, page);
 
         // Assert
-        assertEquals(1, openGames.size());
-        assertEquals(openGame, openGames.get(0));
-        verify(gameRepository, times(1)).findAll();
+        verify(searchIndex, times(1)).contains("obb", null, 0, page);
+        verify(searchIndex, times(1)).fuzzy("Lobyb", null, 0, page);
+        verifyNoInteractions(gameRepository);
     }
 
     @Test
@@ -140,6 +232,19 @@ class GameServiceTest {
         verify(playerRepository, times(1)).save(any(Player.class));
     }
 
+    @Test
+    void testCreateGameUnknownOwnerSavesNothing() {
+        // Arrange
+        when(gameRepository.findByName("New Game")).thenReturn(List.of());
+        when(userRepository.findByName("ghost")).thenReturn(List.of());
+
+        // Act & Assert: no game left behind claiming a seat nobody has
+        assertThrows(IllegalStateException.class, () -> gameService.createGame("New Game", 2, 4, "ghost"));
+        verify(gameRepository, never()).save(any(Game.class));
+        verify(playerRepository, never()).save(any(Player.class));
+        verify(lobbyFeed, never()).publish(any(), any(), any());
+    }
+
     @Test
     void testCreateGameAlreadyExists() {
         // Arrange
@@ -159,9 +264,11 @@ class GameServiceTest {
         Long gameId = 1L;
         String username = "player";
         Game game = new Game();
-        game.setStatus(Game.GameStatus.SIGNUP);
+        game.setUid(gameId);
         game.setOwner("owner");
+        game.setStatus(Game.GameStatus.SIGNUP);
         game.setMaxPlayers(4);
+        game.setPlayerCount(1);
         when(gameRepository.findById(gameId)).thenReturn(Optional.of(game));
 
         // Act
@@ -169,7 +276,24 @@ class GameServiceTest {
 
         // Assert
         assertTrue(canJoin);
-        verify(gameRepository, times(1)).findById(gameId);
+        verify(gameRepository, times(1)).findById(gameId); // by id, so the second-level cache can answer
+        verify(gameRepository, never()).findSummaryByUid(gameId);
+    }
+
+    @Test
+    void testCanJoinGameFull() {
+        // Arrange
+        Long gameId = 1L;
+        Game game = new Game();
+        game.setUid(gameId);
+        game.setOwner("owner");
+        game.setStatus(Game.GameStatus.SIGNUP);
+        game.setMaxPlayers(4);
+        game.setPlayerCount(4);
+        when(gameRepository.findById(gameId)).thenReturn(Optional.of(game));
+
+        // Act & Assert
+        assertFalse(gameService.canJoinGame(gameId, "player"));
     }
 
     @Test
@@ -184,15 +308,103 @@ class GameServiceTest {
         when(gameRepository.findById(gameId)).thenReturn(Optional.of(game));
         when(gameRepository.save(any(Game.class))).thenReturn(game);
         when(playerRepository.save(any(Player.class))).thenReturn(new Player());
+        when(gameRepository.findWithPlayersByUid(gameId)).thenReturn(Optional.of(game)); // the answer, with roster
 
         // Act
         Game result = gameService.joinGame(gameId, username);
 
         // Assert
         assertNotNull(result);
+        assertEquals(1, game.getPlayerCount());
         verify(gameRepository, times(1)).findById(gameId);
         verify(gameRepository, times(1)).save(any(Game.class));
         verify(playerRepository, times(1)).save(any(Player.class));
+        verify(lobbyFeed, times(1)).publish(LobbyEvent.Type.PLAYER_JOINED, game, username);
+    }
+
+    @Test
+    void testJoinGameAnnouncesWhileHoldingTheGameLock() {
+        // Arrange: the event is handed over inside the transaction, so LobbyFeed sends it at commit,
+        // before the next change to the game can start
+        Long gameId = 1L;
+        Game game = new Game();
+        game.setStatus(Game.GameStatus.SIGNUP);
+        game.setOwner("owner");
+        game.setMaxPlayers(4);
+        when(gameRepository.findById(gameId)).thenReturn(Optional.of(game));
+        when(gameRepository.findWithPlayersByUid(gameId)).thenReturn(Optional.of(game));
+        doAnswer(invocation -> {
+            assertEquals(1, gameLocks.activeLocks());
+            return null;
+        }).when(lobbyFeed).publish(LobbyEvent.Type.PLAYER_JOINED, game, "player");
+
+        // Act
+        gameService.joinGame(gameId, "player");
+
+        // Assert
+        verify(lobbyFeed, times(1)).publish(LobbyEvent.Type.PLAYER_JOINED, game, "player");
+        assertEquals(0, gameLocks.activeLocks());
+    }
+
+    @Test
+    void testJoinGameAgainAnnouncesNothing() {
+        // Arrange
+        Long gameId = 1L;
+        Game game = new Game();
+        game.setStatus(Game.GameStatus.SIGNUP);
+        game.setOwner("owner");
+        when(gameRepository.findById(gameId)).thenReturn(Optional.of(game));
+        when(playerRepository.existsByGameUidAndUserName(gameId, "player")).thenReturn(true);
+        when(gameRepository.findWithPlayersByUid(gameId)).thenReturn(Optional.of(game));
+
+        // Act
+        gameService.joinGame(gameId, "player");
+
+        // Assert
+        verify(gameRepository, never()).save(any(Game.class));
+        verifyNoInteractions(lobbyFeed);
+    }
+
+    @Test
+    void testJoinGameFull() {
+        // Arrange
+        Long gameId = 1L;
+        Game game = new Game();
+        game.setStatus(Game.GameStatus.SIGNUP);
+        game.setOwner("owner");
+        game.setMaxPlayers(2);
+        game.setPlayerCount(2);
+        when(gameRepository.findById(gameId)).thenReturn(Optional.of(game));
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> gameService.joinGame(gameId, "player"));
+        assertEquals(2, game.getPlayerCount());
+        verify(playerRepository, never()).save(any(Player.class));
+        verifyNoInteractions(lobbyFeed); // failed changes are not announced
+    }
+
+    @Test
+    void testJoinGameRetriesAfterConcurrentJoin() {
+        // Arrange
+        Long gameId = 1L;
+        Game game = new Game();
+        game.setStatus(Game.GameStatus.SIGNUP);
+        game.setOwner("owner");
+        game.setMaxPlayers(4);
+        when(gameRepository.findById(gameId)).thenReturn(Optional.of(game));
+        // The first commit loses the race on Game.version, the second one goes through
+        when(gameRepository.save(any(Game.class)))
+            .thenThrow(new ObjectOptimisticLockingFailureException(Game.class, gameId))
+            .thenReturn(game);
+        when(gameRepository.findWithPlayersByUid(gameId)).thenReturn(Optional.of(game));
+
+        // Act
+        Game result = gameService.joinGame(gameId, "player");
+
+        // Assert
+        assertNotNull(result);
+        verify(gameRepository, times(2)).findById(gameId);
+        verify(gameRepository, times(2)).save(any(Game.class));
     }
 
     @Test
@@ -204,7 +416,7 @@ class GameServiceTest {
         game.setStatus(Game.GameStatus.SIGNUP);
         game.setOwner(owner);
         game.setMinPlayers(2);
-        game.setPlayers(Arrays.asList(new Player(), new Player()));
+        game.setPlayerCount(2); // two seats taken
         when(gameRepository.findById(gameId)).thenReturn(Optional.of(game));
         when(gameRepository.save(any(Game.class))).thenReturn(game);
 
@@ -217,6 +429,57 @@ class GameServiceTest {
         verify(gameRepository, times(1)).save(any(Game.class));
     }
 
+    @Test
+    void testStartGameNotEnoughPlayers() {
+        // Arrange
+        Long gameId = 1L;
+        Game game = new Game();
+        game.setStatus(Game.GameStatus.SIGNUP);
+        game.setOwner("owner");
+        game.setMinPlayers(3);
+        game.setPlayerCount(2);
+        when(gameRepository.findById(gameId)).thenReturn(Optional.of(game));
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> gameService.startGame(gameId, "owner"));
+        assertEquals(Game.GameStatus.SIGNUP, game.getStatus());
+        verify(gameRepository, never()).save(any(Game.class));
+    }
+
+    @Test
+    void testFinishGameSuccess() {
+        // Arrange
+        Long gameId = 1L;
+        Game game = new Game();
+        game.setStatus(Game.GameStatus.ACTIVE);
+        game.setOwner("owner");
+        when(gameRepository.findById(gameId)).thenReturn(Optional.of(game));
+
+        // Act
+        gameService.finishGame(gameId, "owner");
+
+        // Assert: now up for archiving, see GameReaper
+        assertEquals(Game.GameStatus.FINISHED, game.getStatus());
+        verify(gameRepository, times(1)).save(game);
+        verify(lobbyFeed, times(1)).publish(LobbyEvent.Type.STATUS_CHANGED, game, "owner");
+    }
+
+    @Test
+    void testFinishGameNotStarted() {
+        // Arrange
+        Long gameId = 1L;
+        Game game = new Game();
+        game.setStatus(Game.GameStatus.SIGNUP);
+        game.setOwner("owner");
+        when(gameRepository.findById(gameId)).thenReturn(Optional.of(game));
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> gameService.finishGame(gameId, "owner"));
+        assertThrows(IllegalStateException.class, () -> gameService.finishGame(gameId, "someone"));
+        assertEquals(Game.GameStatus.SIGNUP, game.getStatus());
+        verify(gameRepository, never()).save(any(Game.class));
+    }
+
     @Test
     void testGameOwnership() {
         // Arrange
@@ -236,8 +499,9 @@ class GameServiceTest {
         assertFalse(gameService.isHost(game.getUid(), "nonowner"));
 
         // 3. Verify owner can delete game
+        when(jdbcTemplate.update(startsWith("DELETE FROM game"), any(Object[].class))).thenReturn(1);
         gameService.deleteGame(game.getUid(), owner);
-        verify(gameRepository, times(1)).delete(game);
+        verify(jdbcTemplate, times(1)).update(startsWith("DELETE FROM game"), any(Object[].class));
 
         // 4. Verify non-owner cannot delete game
         Game anotherGame = new Game();
@@ -247,6 +511,50 @@ class GameServiceTest {
         assertThrows(IllegalStateException.class, () -> gameService.deleteGame(anotherGame.getUid(), "nonowner"));
     }
 
+    @Test
+    void testDeleteGameIsTwoStatements() {
+        // Arrange: a full lobby
+        Long gameId = 1L;
+        Game game = new Game();
+        game.setUid(gameId);
+        game.setOwner("owner");
+        game.setStatus(Game.GameStatus.SIGNUP);
+        game.setPlayerCount(100);
+        game.setVersion(7);
+        List<Long> playerIds = LongStream.rangeClosed(1, 100).boxed().toList();
+        when(gameRepository.findById(gameId)).thenReturn(Optional.of(game));
+        when(jdbcTemplate.queryForList(contains("DELETE FROM player"), eq(Long.class), any(Object[].class))).thenReturn(playerIds);
+        when(jdbcTemplate.update(startsWith("DELETE FROM game"), any(Object[].class))).thenReturn(1);
+
+        // Act
+        gameService.deleteGame(gameId, "owner");
+
+        // Assert: one delete for the roster, one for the game (at the version read), nothing per player
+        verify(jdbcTemplate, times(1)).queryForList(contains("DELETE FROM player"), eq(Long.class), any(Object[].class));
+        verify(jdbcTemplate, times(1)).update("DELETE FROM game WHERE game_id = ? AND version = ?", gameId, 7L);
+        verify(playerRepository, never()).delete(any(Player.class));
+        verify(cacheEvictor, times(1)).evictAfterCommit(gameId, playerIds);
+        verify(lobbyFeed, times(1)).publish(LobbyEvent.Type.GAME_DELETED, game, "owner");
+    }
+
+    @Test
+    void testDeleteGameRetriesAfterConcurrentChange() {
+        // Arrange: the first attempt finds the version moved on
+        Long gameId = 1L;
+        Game game = new Game();
+        game.setOwner("owner");
+        game.setStatus(Game.GameStatus.SIGNUP);
+        when(gameRepository.findById(gameId)).thenReturn(Optional.of(game));
+        when(jdbcTemplate.update(startsWith("DELETE FROM game"), any(Object[].class))).thenReturn(0, 1);
+
+        // Act
+        gameService.deleteGame(gameId, "owner");
+
+        // Assert
+        verify(jdbcTemplate, times(2)).update(startsWith("DELETE FROM game"), any(Object[].class));
+        verify(cacheEvictor, times(1)).evictAfterCommit(eq(gameId), any());
+    }
+
     @Test
     void testGameStateTransitions() {
         // Arrange
@@ -254,7 +562,7 @@ class GameServiceTest {
         game.setStatus(Game.GameStatus.INITIAL);
         game.setOwner("owner");
         game.setMinPlayers(2);
-        game.setPlayers(Arrays.asList(new Player(), new Player()));
+        game.setPlayerCount(2); // two seats taken
 
         when(gameRepository.findById(anyLong())).thenReturn(Optional.of(game));
         when(gameRepository.save(any(Game.class))).thenReturn(game);
@@ -0,0 +1,120 @@
+package com.example.accessing_data_rest.service;
+
+import com.example.accessing_data_rest.model.Game;
+import com.example.accessing_data_rest.model.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class JdbcLobbyStoreTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private EntityCacheEvictor cacheEvictor;
+
+    @Mock
+    private PlayerIdAllocator playerIds;
+
+    @InjectMocks
+    private JdbcLobbyStore lobbyStore;
+
+    @Test
+    void testJoinTakesTheSeatThenInserts() {
+        // Arrange
+        Game game = game(1L, 2, 7L);
+        when(jdbcTemplate.update(startsWith("UPDATE game"), eq(3), eq(1L), eq(7L))).thenReturn(1);
+        when(playerIds.next()).thenReturn(500L);
+
+        // Act
+        lobbyStore.addPlayer(game, "ann", user(42L, "ann"));
+
+        // Assert
+        assertEquals(3, game.getPlayerCount());
+        assertEquals(8L, game.getVersion());
+        verify(jdbcTemplate, times(1)).update(startsWith("INSERT INTO player"), eq(500L), eq("ann"), eq(1L), eq(42L));
+        verify(cacheEvictor, times(1)).evictAfterCommit(1L, List.of());
+    }
+
+    @Test
+    void testJoinLosesToAConcurrentChange() {
+        // Arrange: someone else moved the version on since the game was read
+        Game game = game(1L, 2, 7L);
+        when(jdbcTemplate.update(startsWith("UPDATE game"), eq(3), eq(1L), eq(7L))).thenReturn(0);
+
+        // Act & Assert: the caller retries on this
+        assertThrows(OptimisticLockingFailureException.class, () -> lobbyStore.addPlayer(game, "ann", null));
+        assertEquals(2, game.getPlayerCount());
+        verify(jdbcTemplate, times(1)).update(startsWith("UPDATE game"), eq(3), eq(1L), eq(7L));
+        verifyNoMoreInteractions(jdbcTemplate); // no insert
+        verifyNoInteractions(playerIds, cacheEvictor);
+    }
+
+    @Test
+    void testLeaveFreesTheSeatAndEvictsThePlayer() {
+        // Arrange
+        Game game = game(1L, 2, 7L);
+        when(jdbcTemplate.queryForList(contains("DELETE FROM player"), eq(Long.class), eq("ann"), eq(1L)))
+                .thenReturn(List.of(500L));
+        when(jdbcTemplate.update(startsWith("UPDATE game"), eq(1), eq(1L), eq(7L))).thenReturn(1);
+
+        // Act
+        boolean removed = lobbyStore.removePlayer(game, "ann");
+
+        // Assert
+        assertTrue(removed);
+        assertEquals(1, game.getPlayerCount());
+        assertEquals(8L, game.getVersion());
+        verify(cacheEvictor, times(1)).evictAfterCommit(1L, List.of(500L));
+    }
+
+    @Test
+    void testLeaveOfANonPlayerChangesNothing() {
+        // Arrange
+        Game game = game(1L, 2, 7L);
+        when(jdbcTemplate.queryForList(contains("DELETE FROM player"), eq(Long.class), eq("bo"), eq(1L)))
+                .thenReturn(List.of());
+
+        // Act
+        boolean removed = lobbyStore.removePlayer(game, "bo");
+
+        // Assert
+        assertFalse(removed);
+        assertEquals(7L, game.getVersion());
+        verify(jdbcTemplate, times(1)).queryForList(contains("DELETE FROM player"), eq(Long.class), eq("bo"), eq(1L));
+        verifyNoMoreInteractions(jdbcTemplate); // the seats stay as they are
+        verifyNoInteractions(cacheEvictor);
+    }
+
+    private static Game game(long uid, int playerCount, long version) {
+        Game game = new Game();
+        game.setUid(uid);
+        game.setName("Game" + uid);
+        game.setOwner("owner");
+        game.setMinPlayers(2);
+        game.setMaxPlayers(4);
+        game.setStatus(Game.GameStatus.SIGNUP);
+        game.setPlayerCount(playerCount);
+        game.setVersion(version);
+        return game;
+    }
+
+    private static User user(long uid, String name) {
+        User user = new User();
+        user.setUid(uid);
+        user.setName(name);
+        return user;
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.accessing_data_rest.service;
+
+import com.example.accessing_data_rest.dto.GameSummary;
+import com.example.accessing_data_rest.dto.LobbyEvent;
+import com.example.accessing_data_rest.dto.LobbySeat;
+import com.example.accessing_data_rest.model.Game;
+import com.example.accessing_data_rest.repositories.GameRepository;
+import com.example.accessing_data_rest.repositories.PlayerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LobbyEngineTest {
+
+    @Mock
+    private GameRepository gameRepository;
+
+    @Mock
+    private PlayerRepository playerRepository;
+
+    @Mock
+    private LobbyWriteBehind writeBehind;
+
+    @Mock
+    private LobbyFeed lobbyFeed;
+
+    @InjectMocks
+    private LobbyEngine lobbyEngine;
+
+    @BeforeEach
+    void setUp() {
+        // game 1: owner + ann, 5 seats
+        when(gameRepository.findSummariesByStatus(eq(Game.GameStatus.SIGNUP), any(Pageable.class))).thenReturn(
+            new SliceImpl<>(List.of(new GameSummary(1L, "Game1", 2, 5, "owner", Game.GameStatus.SIGNUP, 2))));
+        when(playerRepository.findSeatsByGameStatus(Game.GameStatus.SIGNUP)).thenReturn(List.of(
+            new LobbySeat(1L, 100L, "owner"),
+            new LobbySeat(1L, 101L, "ann")));
+        lobbyEngine.load();
+    }
+
+    @Test
+    void testAnswersFromMemory() {
+        // Act & Assert
+        assertEquals(Optional.of(true), lobbyEngine.canJoin(1L, "bo"));
+        assertEquals(Optional.of(false), lobbyEngine.canJoin(1L, "owner"));
+        assertEquals(Optional.of(true), lobbyEngine.isHost(1L, "owner"));
+        assertEquals(Optional.empty(), lobbyEngine.canJoin(2L, "bo")); // not ours: the DB decides
+        assertEquals(LobbyEngine.Seat.NOT_HERE, lobbyEngine.join(2L, "bo"));
+        Game game = lobbyEngine.snapshot(1L).orElseThrow();
+        assertEquals(2, game.getPlayerCount());
+        assertEquals(101L, game.getPlayers().get(1).getUid());
+        verify(gameRepository, never()).findSummaryByUid(anyLong());
+    }
+
+    @Test
+    void testJoinAndLeaveAreQueuedAndAnnounced() {
+        // Arrange
+        when(writeBehind.joined(1L, "bo")).thenReturn(102L);
+
+        // Act & Assert
+        assertEquals(LobbyEngine.Seat.JOINED, lobbyEngine.join(1L, "bo"));
+        assertEquals(LobbyEngine.Seat.ALREADY_JOINED, lobbyEngine.join(1L, "bo"));
+        assertEquals(LobbyEngine.Seat.LEFT, lobbyEngine.leave(1L, "bo"));
+        assertEquals(LobbyEngine.Seat.NOT_A_PLAYER, lobbyEngine.leave(1L, "bo"));
+        verify(writeBehind, times(1)).joined(1L, "bo");
+        verify(writeBehind, times(1)).left(1L, 102L); // the row the join created
+        verify(lobbyFeed, times(1)).publish(eq(LobbyEvent.Type.PLAYER_JOINED), any(Game.class), eq("bo"));
+        verify(lobbyFeed, times(1)).publish(eq(LobbyEvent.Type.PLAYER_LEFT), any(Game.class), eq("bo"));
+    }
+
+    @Test
+    void testConcurrentJoinsNeverOverfill() throws Exception {
+        // Arrange: 3 free seats, 20 users racing for them
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<LobbyEngine.Seat>> seats = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 20; i++) {
+            String username = "user" + i;
+            seats.add(pool.submit(() -> lobbyEngine.join(1L, username)));
+        }
+        int joined = 0;
+        for (Future<LobbyEngine.Seat> seat : seats) {
+            if (seat.get(10, TimeUnit.SECONDS) == LobbyEngine.Seat.JOINED) {
+                joined++;
+            }
+        }
+        pool.shutdown();
+
+        // Assert
+        assertEquals(3, joined);
+        assertEquals(5, lobbyEngine.snapshot(1L).orElseThrow().getPlayerCount());
+        verify(writeBehind, times(3)).joined(eq(1L), anyString());
+    }
+
+    @Test
+    void testStartedGameIsSavedThenDropped() throws Exception {
+        // Arrange
+        when(gameRepository.findSummaryByUid(1L)).thenReturn(
+            Optional.of(new GameSummary(1L, "Game1", 2, 5, "owner", Game.GameStatus.ACTIVE, 2)));
+
+        // Act
+        String result = lobbyEngine.exclusive(1L, () -> "started");
+
+        // Assert
+        assertEquals("started", result);
+        verify(writeBehind, times(1)).awaitFlushed(); // the DB had the roster before the start ran
+        assertFalse(lobbyEngine.tracks(1L));
+        assertEquals(LobbyEngine.Seat.NOT_HERE, lobbyEngine.join(1L, "bo"));
+    }
+}
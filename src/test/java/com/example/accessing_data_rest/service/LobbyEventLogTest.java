@@ -0,0 +1,238 @@
+package com.example.accessing_data_rest.service;
+
+import com.example.accessing_data_rest.dto.LobbyEvent;
+import com.example.accessing_data_rest.model.Game;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT) // not every test reopens the log
+class LobbyEventLogTest {
+
+    @TempDir
+    private Path dir;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private long seq;
+
+    @BeforeEach
+    void setUp() {
+        databaseHolds(0, 0, 0); // the lobby starts out empty
+    }
+
+    @Test
+    void testReopensFromTheSnapshotAndCarriesOn() throws Exception {
+        // Arrange: the DB agrees with what is logged
+        LobbyEventLog eventLog = open(10);
+        append(eventLog, LobbyEvent.Type.GAME_CREATED, game(1, 1), "ann");
+        append(eventLog, LobbyEvent.Type.PLAYER_JOINED, game(1, 2), "bo");
+        append(eventLog, LobbyEvent.Type.GAME_CREATED, game(2, 1), "bo");
+        append(eventLog, LobbyEvent.Type.PLAYER_LEFT, game(1, 1), "ann");
+        databaseHolds(2, 2, 2);
+
+        // Act
+        eventLog.close(); // writes a snapshot
+        LobbyEventLog reopened = open(10);
+
+        // Assert
+        assertEquals(4, reopened.lastSequence());
+        assertEquals(List.of(1L, 2L), uids(reopened.view()));
+        assertEquals(List.of(1, 1), playerCounts(reopened.view()));
+        assertEquals(1, files("snapshot-").size());
+        verify(jdbcTemplate, never()).query(anyString(), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    void testReplaysTheLogUpToATornRecord() throws Exception {
+        // Arrange: no snapshot, the process died while the third event was being written
+        LobbyEventLog eventLog = open(10);
+        append(eventLog, LobbyEvent.Type.GAME_CREATED, game(1, 1), "ann");
+        append(eventLog, LobbyEvent.Type.PLAYER_JOINED, game(1, 2), "bo");
+        append(eventLog, LobbyEvent.Type.PLAYER_JOINED, game(1, 3), "cy");
+        tearLastRecord();
+        databaseHolds(1, 2, 1);
+
+        // Act
+        LobbyEventLog reopened = open(10);
+        long before = reopened.lastSequence();
+        append(reopened, LobbyEvent.Type.PLAYER_JOINED, game(1, 3), "dee", 3);
+        databaseHolds(1, 3, 1);
+        LobbyEventLog again = open(10);
+
+        // Assert: the torn record is gone and the next one took its place
+        assertEquals(2, before);
+        assertEquals(List.of(3), playerCounts(again.view()));
+        assertEquals(3, again.lastSequence());
+    }
+
+    @Test
+    void testSnapshotsCompactTheSegments() throws Exception {
+        // Arrange: tiny segments, a snapshot every 5 events
+        LobbyEventLog eventLog = open(5, DataSize.ofBytes(200));
+        for (int i = 1; i <= 12; i++) {
+            append(eventLog, LobbyEvent.Type.GAME_CREATED, game(i, 1), "user" + i);
+        }
+
+        // Act
+        eventLog.close();
+
+        // Assert: one snapshot, and only the segment being written is left
+        assertEquals(1, files("snapshot-").size());
+        assertEquals(1, files("events-").size());
+        databaseHolds(12, 12, 12);
+        assertEquals(12, open(5, DataSize.ofBytes(200)).view().size());
+    }
+
+    @Test
+    void testRebuildsFromTheDatabaseWhenTheyDisagree() throws Exception {
+        // Arrange: a game was deleted while its event never made it to the log
+        LobbyEventLog eventLog = open(10);
+        append(eventLog, LobbyEvent.Type.GAME_CREATED, game(1, 1), "ann");
+        databaseHolds(0, 0, 0);
+
+        // Act
+        LobbyEventLog reopened = open(10);
+
+        // Assert: the view follows the (empty) DB, and numbering carries on
+        assertEquals(0, reopened.view().size());
+        assertEquals(1, reopened.lastSequence());
+        assertEquals(List.of(String.format("events-%020d.log", 2)), files("events-"));
+    }
+
+    @Test
+    void testRebuildsWhenAStatusChangeWasLost() throws Exception {
+        // Arrange: the game was started, which changes neither the counts nor the uids,
+        // but its STATUS_CHANGED never made it to the log
+        LobbyEventLog eventLog = open(10);
+        append(eventLog, LobbyEvent.Type.GAME_CREATED, game(1, 2), "ann");
+        databaseHolds(1, Game.GameStatus.ACTIVE, 2, 0, 1);
+
+        // Act
+        open(10);
+
+        // Assert: rebuilt from the game table
+        verify(jdbcTemplate, times(1)).query(contains("ORDER BY game_id"), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    void testRebuildsWhenTheVersionsDontAddUp() throws Exception {
+        // Arrange: same games, statuses and seat counts, but one more change in the DB than logged
+        // (a join in one game and a leave in another cancel out in the counts)
+        LobbyEventLog eventLog = open(10);
+        append(eventLog, LobbyEvent.Type.GAME_CREATED, game(1, 2), "ann");
+        databaseHolds(1, Game.GameStatus.SIGNUP, 2, 1, 1);
+
+        // Act
+        open(10);
+
+        // Assert
+        verify(jdbcTemplate, times(1)).query(contains("ORDER BY game_id"), any(RowCallbackHandler.class));
+    }
+
+    private LobbyEventLog open(long snapshotEvery) throws Exception {
+        return open(snapshotEvery, DataSize.ofKilobytes(64));
+    }
+
+    private LobbyEventLog open(long snapshotEvery, DataSize segmentSize) throws Exception {
+        LobbyEventLog eventLog = new LobbyEventLog(dir.toString(), segmentSize, snapshotEvery);
+        ReflectionTestUtils.setField(eventLog, "jdbcTemplate", jdbcTemplate);
+        eventLog.open();
+        return eventLog;
+    }
+
+    private void databaseHolds(long games, long playerCounts, long maxUid) {
+        databaseHolds(games, Game.GameStatus.SIGNUP, playerCounts, 0, maxUid);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void databaseHolds(long games, Game.GameStatus status, long playerCounts, long versions, long maxUid) {
+        when(jdbcTemplate.query(contains("FROM game GROUP BY status"), any(RowMapper.class)))
+                .thenReturn(games == 0 ? List.of() : List.of(new LobbyView.Fingerprint(games, Map.of(status, games),
+                        playerCounts, versions, maxUid)));
+    }
+
+    private void append(LobbyEventLog eventLog, LobbyEvent.Type type, Game game, String username) {
+        append(eventLog, type, game, username, ++seq);
+    }
+
+    private void append(LobbyEventLog eventLog, LobbyEvent.Type type, Game game, String username, long seq) {
+        eventLog.append(LobbyEvent.of(type, game, username).withSeq(seq)); // as LobbyFeed numbers them
+    }
+
+    // flips a byte in the newest record, as if the write had been cut short
+    private void tearLastRecord() throws Exception {
+        Path segment = dir.resolve(files("events-").get(0));
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            int at = 0;
+            int last = 0;
+            while (true) {
+                file.seek(at);
+                int length = file.readInt();
+                if (length == 0) {
+                    break;
+                }
+                last = at;
+                at += 8 + length;
+            }
+            file.seek(last + 8);
+            int b = file.read();
+            file.seek(last + 8);
+            file.write(b ^ 0xff);
+        }
+    }
+
+    private List<String> files(String prefix) throws Exception {
+        try (Stream<Path> listing = Files.list(dir)) {
+            return listing.map(file -> file.getFileName().toString()).filter(name -> name.startsWith(prefix)).sorted().toList();
+        }
+    }
+
+    private static List<Long> uids(LobbyView view) {
+        List<Long> uids = new ArrayList<>();
+        view.forEachGame(game -> uids.add(game.uid()));
+        return uids;
+    }
+
+    private static List<Integer> playerCounts(LobbyView view) {
+        List<Integer> counts = new ArrayList<>();
+        view.forEachGame(game -> counts.add(game.playerCount()));
+        return counts;
+    }
+
+    private static Game game(long uid, int playerCount) {
+        Game game = new Game();
+        game.setUid(uid);
+        game.setName("Game" + uid);
+        game.setOwner("owner");
+        game.setMinPlayers(2);
+        game.setMaxPlayers(4);
+        game.setStatus(Game.GameStatus.SIGNUP);
+        game.setPlayerCount(playerCount);
+        return game;
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.accessing_data_rest.service;
+
+import com.example.accessing_data_rest.dto.LobbyEvent;
+import com.example.accessing_data_rest.model.Game;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LobbyFeedTest {
+
+    private final LobbyFeed lobbyFeed = new LobbyFeed(3, Duration.ofMinutes(1), 2, 1); // remembers 3 events, SSE clients 2 behind
+
+    @AfterEach
+    void tearDown() {
+        lobbyFeed.shutdown();
+    }
+
+    @Test
+    void testSubscriberGetsEventsInOrder() throws Exception {
+        // Arrange
+        Recorder recorder = new Recorder();
+        lobbyFeed.subscribe(recorder, null);
+
+        // Act
+        lobbyFeed.publish(LobbyEvent.Type.GAME_CREATED, game(1), "owner");
+        lobbyFeed.publish(LobbyEvent.Type.PLAYER_JOINED, game(1), "player");
+        lobbyFeed.awaitDispatched();
+
+        // Assert
+        assertEquals(List.of(1L, 2L), recorder.seqs());
+        assertEquals(LobbyEvent.Type.PLAYER_JOINED, recorder.events.get(1).type());
+        assertEquals("player", recorder.events.get(1).username());
+        assertEquals(2, lobbyFeed.lastSequence());
+    }
+
+    @Test
+    void testResumeReplaysMissedEvents() throws Exception {
+        // Arrange
+        for (int i = 1; i <= 4; i++) {
+            lobbyFeed.publish(LobbyEvent.Type.PLAYER_JOINED, game(1), "player" + i);
+        }
+        Recorder recorder = new Recorder();
+
+        // Act
+        lobbyFeed.subscribe(recorder, 2L); // saw 1 and 2, then lost the connection
+        lobbyFeed.publish(LobbyEvent.Type.PLAYER_LEFT, game(1), "player1");
+        lobbyFeed.awaitDispatched();
+
+        // Assert
+        assertEquals(List.of(3L, 4L, 5L), recorder.seqs());
+    }
+
+    @Test
+    void testResumeTooFarBackAsksForResync() throws Exception {
+        // Arrange
+        for (int i = 1; i <= 5; i++) {
+            lobbyFeed.publish(LobbyEvent.Type.PLAYER_JOINED, game(1), "player" + i);
+        }
+        Recorder recorder = new Recorder();
+
+        // Act
+        lobbyFeed.subscribe(recorder, 1L); // 2 has already been forgotten
+        lobbyFeed.awaitDispatched();
+
+        // Assert
+        assertEquals(1, recorder.events.size());
+        assertEquals(LobbyEvent.Type.RESYNC, recorder.events.get(0).type());
+        assertEquals(5L, recorder.events.get(0).seq());
+    }
+
+    @Test
+    void testFailingListenerIsDropped() throws Exception {
+        // Arrange
+        Recorder healthy = new Recorder();
+        int[] calls = {0};
+        lobbyFeed.subscribe(event -> {
+            calls[0]++;
+            throw new IllegalStateException("connection closed");
+        }, null);
+        lobbyFeed.subscribe(healthy, null);
+
+        // Act
+        lobbyFeed.publish(LobbyEvent.Type.GAME_CREATED, game(1), "owner");
+        lobbyFeed.publish(LobbyEvent.Type.GAME_DELETED, game(1), "owner");
+        lobbyFeed.awaitDispatched();
+
+        // Assert
+        assertEquals(1, calls[0]);
+        assertEquals(2, healthy.events.size());
+    }
+
+    @Test
+    void testEventInTransactionWaitsForCommit() throws Exception {
+        // Arrange
+        Recorder recorder = new Recorder();
+        lobbyFeed.subscribe(recorder, null);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // Act
+            lobbyFeed.publish(LobbyEvent.Type.PLAYER_JOINED, game(1), "player");
+            lobbyFeed.awaitDispatched();
+
+            // Assert
+            assertTrue(recorder.events.isEmpty());
+            for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+                sync.afterCommit();
+            }
+            lobbyFeed.awaitDispatched();
+            assertEquals(List.of(1L), recorder.seqs());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testLobbyVersionMovesOnCommit() {
+        // Arrange
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // Act
+            lobbyFeed.publish(LobbyEvent.Type.GAME_CREATED, game(1), "owner");
+
+            // Assert
+            assertEquals(0, lobbyFeed.lobbyVersion()); // not committed yet
+            for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+                sync.afterCommit();
+            }
+            assertEquals(1, lobbyFeed.lobbyVersion()); // right away, not once the event is dispatched
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testSlowSseClientIsResyncedWithoutHoldingUpTheFeed() throws Exception {
+        // Arrange
+        List<Runnable> sender = new ArrayList<>(); // the client's sends, run when we say so
+        SseEmitter emitter = mock(SseEmitter.class);
+        LobbyFeed.SseListener client = new LobbyFeed.SseListener(emitter, 2, sender::add);
+        Recorder recorder = new Recorder();
+        lobbyFeed.subscribe(client, null);
+        lobbyFeed.subscribe(recorder, null);
+
+        // Act
+        for (int i = 1; i <= 3; i++) {
+            lobbyFeed.publish(LobbyEvent.Type.PLAYER_JOINED, game(1), "player" + i);
+        }
+        lobbyFeed.awaitDispatched();
+
+        // Assert
+        assertEquals(List.of(1L, 2L, 3L), recorder.seqs()); // nothing was sent to the client yet
+        assertEquals(1, sender.size());
+        sender.get(0).run();
+        ArgumentCaptor<SseEmitter.SseEventBuilder> sent = ArgumentCaptor.forClass(SseEmitter.SseEventBuilder.class);
+        verify(emitter, times(1)).send(sent.capture()); // two events fell out, one RESYNC took their place
+        String message = sent.getValue().build().iterator().next().getData().toString();
+        assertTrue(message.contains("id:3") && message.contains("event:RESYNC"), message);
+    }
+
+    private static Game game(long uid) {
+        Game game = new Game();
+        game.setUid(uid);
+        game.setName("Game" + uid);
+        game.setStatus(Game.GameStatus.SIGNUP);
+        return game;
+    }
+
+    private static final class Recorder implements LobbyListener {
+        private final List<LobbyEvent> events = new ArrayList<>(); // written on the feed's thread, read after awaitDispatched()
+
+        @Override
+        public void onLobbyEvent(LobbyEvent event) {
+            events.add(event);
+        }
+
+        List<Long> seqs() {
+            return events.stream().map(LobbyEvent::seq).toList();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.accessing_data_rest.service;
+
+import com.example.accessing_data_rest.dto.LobbyEvent;
+import com.example.accessing_data_rest.dto.LobbySeat;
+import com.example.accessing_data_rest.dto.QuickJoinTicket;
+import com.example.accessing_data_rest.model.Game;
+import com.example.accessing_data_rest.model.User;
+import com.example.accessing_data_rest.repositories.GameRepository;
+import com.example.accessing_data_rest.repositories.PlayerRepository;
+import com.example.accessing_data_rest.repositories.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT) // the user lookups are shared by all tests
+class MatchmakingServiceTest {
+
+    @Mock
+    private GameRepository gameRepository;
+
+    @Mock
+    private PlayerRepository playerRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private LobbyFeed lobbyFeed;
+
+    @Spy
+    private UserCache userCache = new UserCache(100, Duration.ofMinutes(1));
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
+    @Spy
+    private GameLockManager gameLocks = new GameLockManager();
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private MatchmakingService matchmaking = new MatchmakingService(64, Duration.ZERO, Duration.ofMinutes(5), registry);
+
+    @BeforeEach
+    void setUp() {
+        when(userRepository.findByName(anyString())).thenAnswer(call -> List.of(user(call.getArgument(0))));
+        when(userRepository.findByNameIn(anyCollection())).thenAnswer(call -> call.<Collection<String>>getArgument(0)
+                .stream().map(MatchmakingServiceTest::user).toList());
+    }
+
+    @Test
+    void testFillsTheFullestFittingGameFirst() {
+        // Arrange
+        Game roomy = game(1L, 1, 4);
+        Game almostFull = game(2L, 3, 4);
+        when(gameRepository.findIdsWithFreeSeats(eq(Game.GameStatus.SIGNUP), eq(2), eq(4), any(Pageable.class)))
+                .thenReturn(List.of(2L, 1L));
+        when(gameRepository.findForUpdateWithFreeSeats(List.of(2L, 1L), Game.GameStatus.SIGNUP, 2, 4))
+                .thenReturn(List.of(roomy, almostFull));
+        long ann = matchmaking.enqueue("ann", 2, 4).ticket();
+        long bo = matchmaking.enqueue("bo", 2, 4).ticket();
+
+        // Act
+        int batches = matchmaking.matchQueued();
+
+        // Assert: one batch, ann takes the last seat of game 2, bo goes to game 1
+        assertEquals(1, batches);
+        assertEquals(seated(QuickJoinTicket.Status.JOINED, 2L), outcome(ann));
+        assertEquals(seated(QuickJoinTicket.Status.JOINED, 1L), outcome(bo));
+        assertEquals(4, almostFull.getPlayerCount());
+        assertEquals(2, roomy.getPlayerCount());
+        verify(playerRepository, times(1)).saveAll(argThat(players -> ((Collection<?>) players).size() == 2));
+        verify(lobbyFeed, times(2)).publish(eq(LobbyEvent.Type.PLAYER_JOINED), any(Game.class), anyString());
+        assertEquals(2, registry.get("lobby.matchmaking.wait").tag("result", "joined").timer().count());
+        verify(gameLocks, times(1)).withLocks(eq(List.of(2L, 1L)), any()); // held through the commit, as joinGame does
+        assertEquals(0, gameLocks.activeLocks());
+    }
+
+    @Test
+    void testCreatesAGameWhenNoneFits() {
+        // Arrange: no open game; new ones get ids as the sequence would hand them out
+        when(gameRepository.findIdsWithFreeSeats(any(), anyInt(), anyInt(), any(Pageable.class))).thenReturn(List.of());
+        AtomicLong ids = new AtomicLong(100);
+        when(gameRepository.save(any(Game.class))).thenAnswer(call -> {
+            Game game = call.getArgument(0);
+            game.setUid(ids.getAndIncrement());
+            return game;
+        });
+        List<Long> tickets = List.of("ann", "bo", "cy", "dee").stream()
+                .map(name -> matchmaking.enqueue(name, 3, 3).ticket()).toList();
+
+        // Act
+        matchmaking.matchQueued();
+
+        // Assert: ann owns a game of 3 that bo and cy fill; dee starts the next one
+        assertEquals(seated(QuickJoinTicket.Status.CREATED, 100L), outcome(tickets.get(0)));
+        assertEquals(seated(QuickJoinTicket.Status.JOINED, 100L), outcome(tickets.get(1)));
+        assertEquals(seated(QuickJoinTicket.Status.JOINED, 100L), outcome(tickets.get(2)));
+        assertEquals(seated(QuickJoinTicket.Status.CREATED, 101L), outcome(tickets.get(3)));
+        verify(gameRepository, times(2)).save(argThat(game -> game.getMinPlayers() == 3 && game.getMaxPlayers() == 3));
+        verify(gameRepository, never()).findForUpdateWithFreeSeats(anyCollection(), any(), anyInt(), anyInt()); // nothing to lock
+        verify(lobbyFeed, times(2)).publish(eq(LobbyEvent.Type.GAME_CREATED), any(Game.class), anyString());
+    }
+
+    @Test
+    void testSkipsGamesTheUserIsAlreadyIn() {
+        // Arrange
+        Game game = game(1L, 2, 4);
+        when(gameRepository.findIdsWithFreeSeats(any(), anyInt(), anyInt(), any(Pageable.class))).thenReturn(List.of(1L));
+        when(gameRepository.findForUpdateWithFreeSeats(anyCollection(), any(), anyInt(), anyInt())).thenReturn(List.of(game));
+        when(playerRepository.findSeatsOfUsersInGames(anyCollection(), anyCollection()))
+                .thenReturn(List.of(new LobbySeat(1L, 7L, "ann")));
+        when(gameRepository.save(any(Game.class))).thenAnswer(call -> {
+            Game created = call.getArgument(0);
+            created.setUid(100L);
+            return created;
+        });
+        long ann = matchmaking.enqueue("ann", 2, 4).ticket();
+
+        // Act
+        matchmaking.matchQueued();
+
+        // Assert
+        assertEquals(seated(QuickJoinTicket.Status.CREATED, 100L), outcome(ann));
+        assertEquals(2, game.getPlayerCount());
+    }
+
+    @Test
+    void testQueueingAgainKeepsTheTicket() {
+        // Act
+        QuickJoinTicket first = matchmaking.enqueue("ann", 2, 4);
+        QuickJoinTicket again = matchmaking.enqueue("ann", 2, 8);
+
+        // Assert
+        assertEquals(first, again);
+        assertEquals(QuickJoinTicket.Status.WAITING, again.status());
+        assertThrows(IllegalStateException.class, () -> matchmaking.enqueue("bo", 4, 2));
+        assertEquals(QuickJoinTicket.Status.CANCELLED, matchmaking.cancel(first.ticket(), "ann").status());
+        assertThrows(IllegalStateException.class, () -> matchmaking.cancel(first.ticket(), "ann"));
+    }
+
+    private QuickJoinTicket outcome(long ticket) {
+        QuickJoinTicket state = matchmaking.getTicket(ticket).orElseThrow();
+        return seated(state.status(), state.gameId());
+    }
+
+    private static QuickJoinTicket seated(QuickJoinTicket.Status status, Long gameId) { // just the parts compared
+        return new QuickJoinTicket(0, null, 0, 0, status, gameId, null);
+    }
+
+    private static Game game(long uid, int playerCount, int maxPlayers) {
+        Game game = new Game();
+        game.setUid(uid);
+        game.setMinPlayers(2);
+        game.setMaxPlayers(maxPlayers);
+        game.setPlayerCount(playerCount);
+        game.setStatus(Game.GameStatus.SIGNUP);
+        return game;
+    }
+
+    private static User user(String name) {
+        User user = new User();
+        user.setName(name);
+        return user;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.accessing_data_rest.service;
+
+import com.example.accessing_data_rest.dto.LobbyEvent;
+import com.example.accessing_data_rest.dto.PlayerCountDrift;
+import com.example.accessing_data_rest.model.Game;
+import com.example.accessing_data_rest.repositories.GameRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PlayerCountReconcilerTest {
+
+    @Mock
+    private GameRepository gameRepository;
+
+    @Spy
+    private GameLockManager gameLocks = new GameLockManager();
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
+    @Mock
+    private LobbyFeed lobbyFeed;
+
+    @InjectMocks
+    private PlayerCountReconciler reconciler;
+
+    @Test
+    void testRecountsOnlyDriftedGames() {
+        // Arrange
+        when(gameRepository.findPlayerCountDrift()).thenReturn(List.of(
+            new PlayerCountDrift(1L, 0, 3),
+            new PlayerCountDrift(7L, 5, 4)));
+        when(gameRepository.recountPlayers(anyLong())).thenReturn(1);
+        Game game1 = new Game();
+        game1.setUid(1L);
+        when(gameRepository.findSavedByUid(1L)).thenReturn(Optional.of(game1));
+        when(gameRepository.findSavedByUid(7L)).thenReturn(Optional.empty()); // deleted meanwhile
+
+        // Act
+        int repaired = reconciler.reconcile();
+
+        // Assert
+        assertEquals(2, repaired);
+        verify(gameRepository, times(1)).recountPlayers(1L);
+        verify(gameRepository, times(1)).recountPlayers(7L);
+        verify(gameLocks, times(1)).withLock(eq(1L), any());
+        verify(lobbyFeed, times(1)).publish(LobbyEvent.Type.STATUS_CHANGED, game1, null); // the index and the log's view see the count
+        verifyNoMoreInteractions(lobbyFeed);
+    }
+
+    @Test
+    void testNothingToDoWhenCountsMatch() {
+        // Arrange
+        when(gameRepository.findPlayerCountDrift()).thenReturn(List.of());
+
+        // Act
+        int repaired = reconciler.reconcile();
+
+        // Assert
+        assertEquals(0, repaired);
+        verify(gameRepository, never()).recountPlayers(anyLong());
+        verifyNoInteractions(lobbyFeed);
+    }
+}
@@ -1,5 +1,8 @@
 package com.example.accessing_data_rest.service;
 
+import com.example.accessing_data_rest.dto.BulkJoinResult;
+import com.example.accessing_data_rest.dto.GameSummary;
+import com.example.accessing_data_rest.dto.LobbyEvent;
 import com.example.accessing_data_rest.model.Game;
 import com.example.accessing_data_rest.model.Player;
 import com.example.accessing_data_rest.model.User;
@@ -10,7 +13,13 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.Arrays;
 import java.util.List;
@@ -18,6 +27,10 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -45,7 +58,17 @@ class PlayerServiceTest {
     private GameRepository gameRepository;
 
     @Mock
-    private GameService gameService;
+    private LobbyFeed lobbyFeed;
+
+    /**
+     * {@code @Spy} wraps a real object. Joins run inside a {@code TransactionTemplate} under the game's lock;
+     * backed by a mocked transaction manager it just runs the callback, as in {@code GameServiceTest}.
+     */
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
+    @Spy
+    private GameLockManager gameLocks = new GameLockManager();
 
     /**
      * {@code @InjectMocks} creates an instance of the class and injects the mocks that are created
@@ -116,7 +139,7 @@ class PlayerServiceTest {
         when(gameRepository.findById(gameId)).thenReturn(Optional.of(game));
 
         // Simulate that the user has not joined any game yet
-        when(playerRepository.findByUserUid(userId)).thenReturn(List.of());
+        when(playerRepository.existsByUserUidAndGameUid(userId, gameId)).thenReturn(false);
 
         when(playerRepository.save(any(Player.class))).thenReturn(new Player());
         when(gameRepository.save(any(Game.class))).thenReturn(game);
@@ -125,9 +148,10 @@ class PlayerServiceTest {
         playerService.createPlayerFromIds(playerName, userId, gameId);
 
         // Assert
+        assertEquals(1, game.getPlayerCount());
         verify(userRepository, times(1)).findById(userId);
         verify(gameRepository, times(1)).findById(gameId);
-        verify(playerRepository, times(1)).findByUserUid(userId);
+        verify(playerRepository, times(1)).existsByUserUidAndGameUid(userId, gameId);
         verify(playerRepository, times(1)).save(any(Player.class));
         verify(gameRepository, times(1)).save(any(Game.class));
     }
@@ -177,19 +201,95 @@ class PlayerServiceTest {
         Game game = new Game();
         game.setUid(gameId);
 
-        Player existingPlayer = new Player();
-        existingPlayer.setGame(game);
-
         when(userRepository.findById(userId)).thenReturn(Optional.of(user));
         when(gameRepository.findById(gameId)).thenReturn(Optional.of(game));
         // Simulate that the user has already joined the game
-        when(playerRepository.findByUserUid(userId)).thenReturn(List.of(existingPlayer));
+        when(playerRepository.existsByUserUidAndGameUid(userId, gameId)).thenReturn(true);
 
         // Act & Assert
         assertThrows(IllegalStateException.class, () -> playerService.createPlayerFromIds(playerName, userId, gameId));
         verify(playerRepository, never()).save(any(Player.class));
     }
 
+    @Test
+    void testCreatePlayerFromIdsLosesTheRaceToAConcurrentJoin() {
+        // Arrange
+        Long userId = 1L;
+        Long gameId = 1L;
+
+        User user = new User();
+        user.setUid(userId);
+        user.setName("Test User");
+
+        Game game = new Game();
+        game.setUid(gameId);
+        game.setStatus(Game.GameStatus.SIGNUP);
+        game.setMaxPlayers(4);
+
+        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        when(gameRepository.findById(gameId)).thenReturn(Optional.of(game));
+        // the check passed, but a join of the same user committed first: the unique index says no
+        when(playerRepository.save(any(Player.class))).thenThrow(new DataIntegrityViolationException("uk_player_user_game"));
+
+        // Act & Assert
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> playerService.createPlayerFromIds("New Player", userId, gameId));
+        assertEquals("You have already joined this game", e.getMessage());
+    }
+
+    @Test
+    void testCreatePlayerFromIdsPassesOnAVersionConflict() {
+        // Arrange
+        Long userId = 1L;
+        Long gameId = 1L;
+
+        User user = new User();
+        user.setUid(userId);
+        user.setName("Test User");
+
+        Game game = new Game();
+        game.setUid(gameId);
+        game.setMaxPlayers(4);
+
+        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        when(gameRepository.findById(gameId)).thenReturn(Optional.of(game));
+        // matchmaking seated someone in this game meanwhile, without the lock
+        when(gameRepository.save(game)).thenThrow(new ObjectOptimisticLockingFailureException(Game.class, gameId));
+
+        // Act & Assert
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> playerService.createPlayerFromIds("New Player", userId, gameId)); // the controller's 409
+        verify(lobbyFeed, never()).publish(any(), any(), any());
+    }
+
+    @Test
+    void testCreatePlayerChecksTheSeatUnderTheLock() {
+        // Arrange
+        User user = new User();
+        user.setUid(1L);
+        user.setName("Test User");
+
+        Game game = new Game();
+        game.setUid(1L);
+        game.setMaxPlayers(2);
+        game.setPlayerCount(2); // the last seat went while this request waited for the lock
+
+        Player player = new Player();
+        player.setName("New Player");
+        player.setUser(user);
+        player.setGame(game);
+
+        when(userRepository.findById(user.getUid())).thenReturn(Optional.of(user));
+        when(gameRepository.findById(game.getUid())).thenReturn(Optional.of(game));
+
+        // Act & Assert
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> playerService.createPlayer(player));
+        assertEquals("This game is already full", e.getMessage());
+        verify(gameLocks, times(1)).withLock(eq(1L), any());
+        verify(playerRepository, never()).save(any(Player.class));
+        assertEquals(2, game.getPlayerCount());
+    }
+
     @Test
     void testCreatePlayerSuccess() {
         // Arrange
@@ -207,7 +307,7 @@ class PlayerServiceTest {
 
         when(userRepository.findById(user.getUid())).thenReturn(Optional.of(user));
         when(gameRepository.findById(game.getUid())).thenReturn(Optional.of(game));
-        when(gameService.canJoinGame(game.getUid(), user.getName())).thenReturn(true);
+        game.setMaxPlayers(4);
         when(playerRepository.save(any(Player.class))).thenReturn(player);
 
         // Act
@@ -218,7 +318,6 @@ class PlayerServiceTest {
         assertEquals(player.getName(), result.getName());
         verify(userRepository, times(1)).findById(user.getUid());
         verify(gameRepository, times(1)).findById(game.getUid());
-        verify(gameService, times(1)).canJoinGame(game.getUid(), user.getName());
         verify(playerRepository, times(1)).save(any(Player.class));
     }
 
@@ -242,6 +341,23 @@ class PlayerServiceTest {
         verify(playerRepository, times(1)).findByUserUid(userId);
     }
 
+    @Test
+    void testGetGamesByUser() {
+        // Arrange
+        Long userId = 1L;
+        List<GameSummary> games = List.of(
+                new GameSummary(3L, "Chess Club", 2, 8, "cy", Game.GameStatus.ACTIVE, 5),
+                new GameSummary(7L, "Friday Night Lobby", 2, 4, "ann", Game.GameStatus.SIGNUP, 2));
+        when(playerRepository.findGameSummariesByUserUid(userId)).thenReturn(games);
+
+        // Act
+        List<GameSummary> result = playerService.getGamesByUser(userId);
+
+        // Assert: summaries from the one query, no Player or Game entities
+        assertEquals(games, result);
+        verify(playerRepository, never()).findByUserUid(anyLong());
+    }
+
     @Test
     void testPlayerGameLifecycle() {
         // Arrange
@@ -260,7 +376,7 @@ class PlayerServiceTest {
 
         when(userRepository.findById(userId)).thenReturn(Optional.of(user));
         when(gameRepository.findById(gameId)).thenReturn(Optional.of(game));
-        when(playerRepository.findByUserUid(userId)).thenReturn(List.of());
+        when(playerRepository.existsByUserUidAndGameUid(userId, gameId)).thenReturn(false);
         when(playerRepository.save(any(Player.class))).thenReturn(new Player());
         when(gameRepository.save(any(Game.class))).thenReturn(game);
 
@@ -271,7 +387,7 @@ class PlayerServiceTest {
         // 2. Try to create same player again
         Player existingPlayer = new Player();
         existingPlayer.setGame(game);
-        when(playerRepository.findByUserUid(userId)).thenReturn(List.of(existingPlayer));
+        when(playerRepository.existsByUserUidAndGameUid(userId, gameId)).thenReturn(true);
         assertThrows(IllegalStateException.class, () -> playerService.createPlayerFromIds(playerName, userId, gameId));
 
         // 3. Try to join full game
@@ -294,6 +410,7 @@ class PlayerServiceTest {
         Game game = new Game();
         game.setUid(gameId);
         game.setStatus(Game.GameStatus.ACTIVE); // Game is already active
+        game.setMaxPlayers(4);                  // seats are free, only the status blocks joining
 
         when(userRepository.findById(userId)).thenReturn(Optional.of(user));
         when(gameRepository.findById(gameId)).thenReturn(Optional.of(game));
@@ -303,7 +420,7 @@ class PlayerServiceTest {
 
         // Change game state to SIGNUP
         game.setStatus(Game.GameStatus.SIGNUP);
-        when(playerRepository.findByUserUid(userId)).thenReturn(List.of());
+        when(playerRepository.existsByUserUidAndGameUid(userId, gameId)).thenReturn(false);
         when(playerRepository.save(any(Player.class))).thenReturn(new Player());
         when(gameRepository.save(any(Game.class))).thenReturn(game);
 
@@ -334,7 +451,7 @@ class PlayerServiceTest {
 
         when(userRepository.findById(userId)).thenReturn(Optional.of(user));
         when(gameRepository.findById(gameId)).thenReturn(Optional.of(game));
-        when(gameService.canJoinGame(gameId, playerName)).thenReturn(true);
+        game.setMaxPlayers(4);
         when(playerRepository.save(any(Player.class))).thenReturn(player);
 
         // Act
@@ -385,4 +502,62 @@ class PlayerServiceTest {
         assertTrue(userRetrievedPlayers.contains(player3));
         assertFalse(userRetrievedPlayers.contains(player2));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testJoinGameBulk() {
+        // Arrange
+        Long gameId = 1L;
+        Game game = new Game();
+        game.setUid(gameId);
+        game.setStatus(Game.GameStatus.SIGNUP);
+        game.setMaxPlayers(3);
+        game.setPlayerCount(1); // the owner
+        User ann = new User();
+        ann.setUid(10L);
+        ann.setName("ann");
+        User bo = new User();
+        bo.setUid(11L);
+        bo.setName("bo");
+        User cy = new User();
+        cy.setUid(12L);
+        cy.setName("cy");
+        User owner = new User();
+        owner.setUid(13L);
+        owner.setName("owner");
+        when(gameRepository.findForUpdateByUid(gameId)).thenReturn(Optional.of(game));
+        when(userRepository.findByNameIn(anyList())).thenReturn(List.of(ann, bo, owner));
+        when(userRepository.findAllById(anyList())).thenReturn(List.of(cy));
+        when(playerRepository.findMemberNames(eq(gameId), any())).thenReturn(List.of("owner"));
+
+        // Act
+        List<BulkJoinResult> results = playerService.joinGameBulk(gameId,
+                List.of("ann", "ghost", "owner", "ann", "bo"), List.of(12L));
+
+        // Assert: one query per kind of lookup, one batch of inserts, seats counted once
+        assertEquals(List.of(
+                new BulkJoinResult("ann", 10L, BulkJoinResult.Status.JOINED),
+                new BulkJoinResult("ghost", null, BulkJoinResult.Status.NO_SUCH_USER),
+                new BulkJoinResult("owner", 13L, BulkJoinResult.Status.ALREADY_JOINED),
+                new BulkJoinResult("ann", 10L, BulkJoinResult.Status.ALREADY_JOINED),
+                new BulkJoinResult("bo", 11L, BulkJoinResult.Status.JOINED),
+                new BulkJoinResult("cy", 12L, BulkJoinResult.Status.GAME_FULL)), results);
+        assertEquals(3, game.getPlayerCount());
+        verify(playerRepository, times(1)).saveAll(argThat(players -> ((List<Player>) players).size() == 2));
+        verify(playerRepository, never()).save(any(Player.class));
+        verify(gameRepository, times(1)).save(game);
+        verify(lobbyFeed, times(2)).publish(eq(LobbyEvent.Type.PLAYER_JOINED), eq(game), anyString());
+    }
+
+    @Test
+    void testJoinGameBulkGameNotInSignup() {
+        // Arrange
+        Long gameId = 1L;
+        Game game = new Game();
+        game.setStatus(Game.GameStatus.ACTIVE);
+        when(gameRepository.findForUpdateByUid(gameId)).thenReturn(Optional.of(game));
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> playerService.joinGameBulk(gameId, List.of("ann"), null));
+        verify(playerRepository, never()).saveAll(any());
+    }
+}
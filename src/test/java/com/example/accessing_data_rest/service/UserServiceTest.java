@@ -1,13 +1,19 @@
 package com.example.accessing_data_rest.service;
 
+import com.example.accessing_data_rest.dto.UserSummary;
 import com.example.accessing_data_rest.model.User;
 import com.example.accessing_data_rest.repositories.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 
@@ -33,6 +39,13 @@ class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    /**
+     * {@code @Spy} wraps a real object: the service talks to a real, small {@link UserCache},
+     * so the tests also see which lookups never reach the repository.
+     */
+    @Spy
+    private UserCache userCache = new UserCache(100, Duration.ofMinutes(1));
+
     /**
      * {@code @InjectMocks} creates an instance of the class and injects the mocks that are created
      * with the {@code @Mock} annotations into this instance.
@@ -46,6 +59,20 @@ class UserServiceTest {
     @InjectMocks
     private UserService userService;
 
+    /**
+     * The default {@link LobbyStore}: a real {@link JpaLobbyStore}, with the mocked repositories
+     * injected into it ({@code @Spy} together with {@code @InjectMocks}). Mockito doesn't inject
+     * one class under test into another, so it is handed to the service in {@link #setUpStore()}.
+     */
+    @Spy
+    @InjectMocks
+    private JpaLobbyStore lobbyStore;
+
+    @BeforeEach
+    void setUpStore() {
+        ReflectionTestUtils.setField(userService, "lobbyStore", lobbyStore);
+    }
+
     @Test
     void testGetUsers() {
         // Arrange
@@ -69,18 +96,18 @@ class UserServiceTest {
     void testSearchUsers() {
         // Arrange
         String searchName = "Test";
-        User user = new User();
-        user.setName(searchName);
-        List<User> expectedUsers = List.of(user);
-        when(userRepository.findByName(searchName)).thenReturn(expectedUsers);
+        UserSummary user = new UserSummary(1L, searchName);
+        List<UserSummary> expectedUsers = List.of(user);
+        when(userRepository.findSummariesByName(searchName)).thenReturn(expectedUsers);
 
         // Act
-        List<User> actualUsers = userService.searchUsers(searchName);
+        List<UserSummary> actualUsers = userService.searchUsers(searchName);
 
         // Assert
         assertEquals(expectedUsers.size(), actualUsers.size());
         assertEquals(expectedUsers, actualUsers);
-        verify(userRepository, times(1)).findByName(searchName);
+        verify(userRepository, times(1)).findSummariesByName(searchName);
+        verify(userRepository, never()).findByName(anyString()); // no entities loaded or modified
     }
 
     @Test
@@ -142,6 +169,38 @@ class UserServiceTest {
         verify(userRepository, times(1)).findByName(userName);
     }
 
+    @Test
+    void testSignInServedFromCache() {
+        // Arrange
+        String userName = "HotUser";
+        User user = new User();
+        user.setUid(7L);
+        user.setName(userName);
+        when(userRepository.findByName(userName)).thenReturn(List.of(user));
+
+        // Act
+        userService.signIn(userName);
+        User second = userService.signIn(userName);
+        userService.signOut(userName);
+
+        // Assert
+        assertEquals(7L, second.getUid());
+        assertEquals(userName, second.getName());
+        verify(userRepository, times(1)).findByName(userName); // only the first lookup reaches the DB
+    }
+
+    @Test
+    void testRegisterUserLosesRaceOnUniqueName() {
+        // Arrange
+        String userName = "RacyUser";
+        when(userRepository.findByName(userName)).thenReturn(List.of());
+        // Another request registered the same name between our check and our insert
+        when(userRepository.save(any(User.class))).thenThrow(new DataIntegrityViolationException("uk_user_name"));
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> userService.registerUser(userName));
+    }
+
     @Test
     void testSignInEmptyName() {
         // Arrange
@@ -177,14 +236,13 @@ class UserServiceTest {
         User registeredUser = userService.registerUser(username);
         assertEquals(username, registeredUser.getName());
 
-        // 2. Try to register same username again
-        when(userRepository.findByName(username)).thenReturn(List.of(newUser));
+        // 2. Try to register same username again (the new user is cached since step 1)
         assertThrows(IllegalStateException.class, () -> userService.registerUser(username));
 
         // 3. Sign in with valid username
-        when(userRepository.findByName(username)).thenReturn(List.of(newUser));
         User signedInUser = userService.signIn(username);
         assertEquals(username, signedInUser.getName());
+        verify(userRepository, times(1)).findByName(username); // steps 2 and 3 never reached the DB
 
         // 4. Sign in with invalid username
         assertThrows(IllegalStateException.class, () -> userService.signIn("nonexistentuser"));
@@ -223,23 +281,26 @@ class UserServiceTest {
         user2.setName("testuser2");
         User user3 = new User();
         user3.setName("otheruser");
+        UserSummary summary1 = new UserSummary(1L, "testuser1");
+        UserSummary summary2 = new UserSummary(2L, "testuser2");
+        UserSummary summary3 = new UserSummary(3L, "otheruser");
 
         List<User> allUsers = Arrays.asList(user1, user2, user3);
-        List<User> matchingUsers = Arrays.asList(user1, user2);
+        List<UserSummary> matchingUsers = Arrays.asList(summary1, summary2);
 
         when(userRepository.findAll()).thenReturn(allUsers);
-        when(userRepository.findByName(searchTerm)).thenReturn(matchingUsers);
+        when(userRepository.findSummariesByName(searchTerm)).thenReturn(matchingUsers);
 
         // 1. Test getting all users
         List<User> retrievedUsers = userService.getUsers();
         assertEquals(3, retrievedUsers.size());
 
         // 2. Test searching users
-        List<User> searchResults = userService.searchUsers(searchTerm);
+        List<UserSummary> searchResults = userService.searchUsers(searchTerm);
         assertEquals(2, searchResults.size());
-        assertTrue(searchResults.contains(user1));
-        assertTrue(searchResults.contains(user2));
-        assertFalse(searchResults.contains(user3));
+        assertTrue(searchResults.contains(summary1));
+        assertTrue(searchResults.contains(summary2));
+        assertFalse(searchResults.contains(summary3));
     }
 
     @Test